@@ -0,0 +1,22 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda;
+
+import aws.proserve.bcs.dr.lambda.stub.InMemoryDynamoDB;
+
+/**
+ * Keeps the checkpoints in an in-memory table of their own.
+ */
+public class InMemoryCheckpoints extends Checkpoints {
+    private static final String TABLE_NAME = "checkpoints";
+
+    public InMemoryCheckpoints() {
+        this(new InMemoryDynamoDB());
+    }
+
+    private InMemoryCheckpoints(InMemoryDynamoDB dynamoDB) {
+        super(dynamoDB, TABLE_NAME);
+        dynamoDB.createTable(TABLE_NAME, NAME);
+    }
+}
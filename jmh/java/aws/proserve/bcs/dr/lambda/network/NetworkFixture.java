@@ -0,0 +1,163 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.lambda.stub.Ec2Simulator;
+import aws.proserve.bcs.dr.lambda.stub.InMemoryEc2;
+import aws.proserve.bcs.dr.vpc.VpcConstants;
+import com.amazonaws.jmespath.ObjectMapperSingleton;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds the regions of the route workers in a simulator: the common VPC in the target region, peered with the first
+ * of the source VPCs, and the subnets, route tables and instances of the source VPCs. Half of the source route tables
+ * already route to the common VPC, so that both adding and deleting the routes have changes to plan.
+ * <p>
+ * Within a VPC, the subnets are associated with the custom route tables in turn, one subnet in each round staying
+ * with the main route table.
+ */
+final class NetworkFixture {
+    static final String SOURCE_REGION = "us-east-1";
+    static final String TARGET_REGION = "us-west-2";
+    static final String COMMON_CIDR = "10.255.0.0/16";
+
+    final Ec2Simulator simulator;
+    final InMemoryEc2 sourceEc2;
+    final InMemoryEc2 targetEc2;
+    final String sourceVpcId;
+    final String peerId;
+    final String[] instanceIds;
+
+    NetworkFixture(int vpcs, int routeTables, int subnets, int instances) {
+        this(new Ec2Simulator(0), SOURCE_REGION, TARGET_REGION, vpcs, routeTables, subnets, instances, true);
+    }
+
+    /**
+     * @param peered whether to deploy the common VPC and peer it, otherwise the target region is empty.
+     */
+    NetworkFixture(Ec2Simulator simulator, String sourceRegion, String targetRegion,
+                   int vpcs, int routeTables, int subnets, int instances, boolean peered) {
+        this.simulator = simulator;
+        sourceEc2 = simulator.region(sourceRegion);
+        targetEc2 = simulator.region(targetRegion);
+
+        final var tablesPerVpc = Math.max(1, routeTables / vpcs);
+        final var subnetsPerVpc = Math.max(1, subnets / vpcs);
+        final var vpcIds = new ArrayList<String>();
+        final var subnetIds = new ArrayList<String>();
+        final var tableIds = new ArrayList<String>();
+        for (int v = 0; v < vpcs; v++) {
+            final var vpc = sourceEc2.addVpc("source-" + v, String.format("10.%d.0.0/16", v));
+            vpcIds.add(vpc.getVpcId());
+
+            final var vpcSubnetIds = new ArrayList<List<String>>();
+            for (int t = 0; t < tablesPerVpc; t++) {
+                vpcSubnetIds.add(new ArrayList<>());
+            }
+            for (int s = 0; s < subnetsPerVpc; s++) {
+                final var subnet = sourceEc2.addSubnet(vpc.getVpcId(), "source-" + v + "-" + s,
+                        String.format("10.%d.%d.0/24", v, s));
+                subnetIds.add(subnet.getSubnetId());
+                vpcSubnetIds.get(s % tablesPerVpc).add(subnet.getSubnetId());
+            }
+
+            tableIds.add(sourceEc2.addRouteTable(vpc.getVpcId(), true).getRouteTableId());
+            for (int t = 1; t < tablesPerVpc; t++) {
+                tableIds.add(sourceEc2.addRouteTable(vpc.getVpcId(), false,
+                        vpcSubnetIds.get(t).toArray(new String[0])).getRouteTableId());
+            }
+        }
+
+        sourceVpcId = vpcIds.get(0);
+        if (peered) {
+            final var commonVpcId = deployCommonVpc(targetEc2);
+            peerId = sourceEc2.addPeering(sourceVpcId, targetEc2, commonVpcId, PeerStatus.active.getCode())
+                    .getVpcPeeringConnectionId();
+            for (int t = 0; t < tableIds.size(); t += 2) {
+                sourceEc2.addRoute(tableIds.get(t), COMMON_CIDR, peerId);
+            }
+        } else {
+            peerId = null;
+        }
+
+        instanceIds = new String[instances];
+        for (int i = 0; i < instances; i++) {
+            instanceIds[i] = sourceEc2.addInstance(subnetIds.get(i % subnetIds.size()), "sg-benchmark")
+                    .getInstanceId();
+        }
+    }
+
+    /**
+     * Seeds the common VPC as its stack deploys it, with a private subnet of its own route table.
+     *
+     * @return the ID of the common VPC.
+     */
+    static String deployCommonVpc(InMemoryEc2 ec2) {
+        final var commonVpcId = ec2.addVpc(VpcConstants.COMMON_VPC, COMMON_CIDR).getVpcId();
+        addCommonRouteTables(ec2, commonVpcId, addCommonSubnets(ec2, commonVpcId));
+        return commonVpcId;
+    }
+
+    /**
+     * Seeds the common VPC over time as its stack deploys it: the VPC, then its subnets, then their route tables, each
+     * after {@code calls} calls to the simulator, so that the topology is partial in between.
+     */
+    static void deployCommonVpcInStages(Ec2Simulator simulator, InMemoryEc2 ec2, int calls) {
+        simulator.defer(calls, () -> {
+            final var commonVpcId = ec2.addVpc(VpcConstants.COMMON_VPC, COMMON_CIDR).getVpcId();
+            simulator.defer(calls, () -> {
+                final var privateSubnetId = addCommonSubnets(ec2, commonVpcId);
+                simulator.defer(calls, () -> addCommonRouteTables(ec2, commonVpcId, privateSubnetId));
+            });
+        });
+    }
+
+    /**
+     * @return the ID of the private subnet.
+     */
+    private static String addCommonSubnets(InMemoryEc2 ec2, String commonVpcId) {
+        final var privateSubnet = ec2.addSubnet(commonVpcId, VpcConstants.COMMON_PRIVATE_SUBNET1, "10.255.0.0/24");
+        ec2.addSubnet(commonVpcId, VpcConstants.COMMON_PUBLIC_SUBNET1, "10.255.1.0/24");
+        return privateSubnet.getSubnetId();
+    }
+
+    private static void addCommonRouteTables(InMemoryEc2 ec2, String commonVpcId, String privateSubnetId) {
+        ec2.addRouteTable(commonVpcId, true);
+        ec2.addRouteTable(commonVpcId, false, privateSubnetId);
+    }
+
+    CommonVpcTopology newTopology() {
+        final var topology = new CommonVpcTopology(targetEc2, targetEc2.getRegion(), null,
+                ObjectMapperSingleton.getObjectMapper());
+        // the topology is kept per region across fixtures, drop the one of another fixture.
+        topology.invalidate();
+        return topology;
+    }
+
+    RouteExecutor newRouteExecutor() {
+        return new RouteExecutor(sourceEc2.getRegion(), targetEc2.getRegion(), null);
+    }
+
+    AddPeerRoute.Worker newAddPeerRoute() {
+        return new AddPeerRoute.Worker(sourceEc2, targetEc2, newTopology(), new PeeringResolver(sourceEc2),
+                newRouteExecutor());
+    }
+
+    DeletePeerRoute.Worker newDeletePeerRoute() {
+        return new DeletePeerRoute.Worker(sourceEc2, targetEc2, newTopology(), new PeeringResolver(sourceEc2),
+                newRouteExecutor());
+    }
+
+    PeerRouteBase.Request newRequest(boolean adding, boolean dryRun) {
+        final var request = new PeerRouteBase.Request();
+        request.setSourceVpcId(sourceVpcId);
+        request.setSourceRegion(sourceEc2.getRegion());
+        request.setTargetRegion(targetEc2.getRegion());
+        request.setInstanceIds(adding ? instanceIds : null);
+        request.setDryRun(dryRun);
+        return request;
+    }
+}
@@ -0,0 +1,206 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.lambda.InMemoryCheckpoints;
+import aws.proserve.bcs.dr.lambda.stub.Ec2Simulator;
+import aws.proserve.bcs.dr.lambda.stub.InMemoryLambda;
+import aws.proserve.bcs.dr.lambda.stub.StandardOutput;
+import aws.proserve.bcs.dr.lambda.util.Waiter;
+import com.amazonaws.jmespath.ObjectMapperSingleton;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Load and soak test of the network workflows against an {@link Ec2Simulator}, with the API calls and wall time of
+ * each operation.
+ * <p>
+ * Each lane is a project with a source and a target region of its own, starting without a common VPC, which its stack
+ * then deploys over several calls, the VPC before its subnets and route tables. A round of a lane peers the first
+ * source VPC with the common VPC, invoking {@link PeerVpc} until it completes, adds and deletes the routes of all the
+ * instances, then unpeers. The lanes run concurrently, each with its own simulator seeded from the seed, so that the
+ * throttling of one does not depend on the others. The failures are tallied per operation and exception class.
+ * <p>
+ * The arguments are, in order and all optional: lanes, source VPCs, route tables and subnets of a lane, instances of
+ * a lane, rounds, the throttle rate and the seed. The waits and the mutation rate are tuned down for a simulation
+ * unless set as system properties, see {@link aws.proserve.bcs.dr.lambda.util.EnvConfig}, and nothing is called outside
+ * of the simulator.
+ */
+public final class NetworkSimulation {
+    private static final int MAX_PEER_INVOCATIONS = 20;
+    private static final Duration INVOCATION_BUDGET = Duration.ofSeconds(5);
+    private static final int DEPLOY_STAGE_CALLS = 10;
+
+    private final Map<String, Statistics> statistics = new TreeMap<>();
+    private final Map<String, Long> callsPerOperation = new TreeMap<>();
+    private final Map<String, Long> failuresPerException = new TreeMap<>();
+
+    private NetworkSimulation() {
+    }
+
+    public static void main(String[] args) {
+        // the handlers prime their component during class initialization, which builds the clients of the region.
+        System.setProperty("aws.region", System.getProperty("aws.region", "us-east-1"));
+        System.setProperty("WAIT_BASE_DELAY_MILLIS", System.getProperty("WAIT_BASE_DELAY_MILLIS", "1"));
+        System.setProperty("WAIT_MAX_DELAY_MILLIS", System.getProperty("WAIT_MAX_DELAY_MILLIS", "8"));
+        System.setProperty("ROUTE_MUTATIONS_PER_SECOND", System.getProperty("ROUTE_MUTATIONS_PER_SECOND", "100000"));
+
+        final var lanes = argument(args, 0, 20);
+        final var vpcs = argument(args, 1, 10);
+        final var routeTables = argument(args, 2, 100);
+        final var subnets = argument(args, 3, 200);
+        final var instances = argument(args, 4, 1000);
+        final var rounds = argument(args, 5, 3);
+        final var throttleRate = args.length > 6 ? Double.parseDouble(args[6]) : 0.02;
+        final var seed = args.length > 7 ? Long.parseLong(args[7]) : 1;
+
+        final var out = System.out;
+        StandardOutput.discard();
+
+        final var simulation = new NetworkSimulation();
+        final var executor = Executors.newFixedThreadPool(Math.min(lanes, Runtime.getRuntime().availableProcessors()));
+        final var start = System.nanoTime();
+        try {
+            final var futures = new ArrayList<CompletableFuture<Void>>();
+            for (int lane = 0; lane < lanes; lane++) {
+                final var simulator = new Ec2Simulator(seed + lane).withThrottleRate(throttleRate);
+                final var fixture = new NetworkFixture(simulator, "source-" + lane, "target-" + lane,
+                        vpcs, routeTables, subnets, instances, false);
+                futures.add(CompletableFuture.runAsync(() -> simulation.run(fixture, rounds), executor));
+            }
+            futures.forEach(CompletableFuture::join);
+        } finally {
+            executor.shutdown();
+        }
+
+        out.printf("%d lanes x %d rounds, %d route tables and %d instances per lane, throttle rate %.3f, %d ms%n",
+                lanes, rounds, routeTables, instances, throttleRate,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        simulation.print(out);
+    }
+
+    private void run(NetworkFixture fixture, int rounds) {
+        final var deployed = new AtomicBoolean();
+        final var lambda = new InMemoryLambda().register("DRPCommonDeployCommonVpc", payload -> {
+            if (deployed.compareAndSet(false, true)) {
+                NetworkFixture.deployCommonVpcInStages(fixture.simulator, fixture.targetEc2, DEPLOY_STAGE_CALLS);
+            }
+        });
+
+        final var topology = fixture.newTopology();
+        final var resolver = new PeeringResolver(fixture.sourceEc2);
+        final var checkpoints = new InMemoryCheckpoints();
+        final var peerVpc = new PeerVpc.Worker(ObjectMapperSingleton.getObjectMapper(), lambda,
+                fixture.sourceEc2, fixture.targetEc2, topology, resolver, checkpoints);
+        final var unpeerVpc = new UnpeerVpc.Worker(fixture.sourceEc2, topology, resolver, checkpoints);
+        final var addPeerRoute = new AddPeerRoute.Worker(fixture.sourceEc2, fixture.targetEc2, topology, resolver,
+                fixture.newRouteExecutor());
+        final var deletePeerRoute = new DeletePeerRoute.Worker(fixture.sourceEc2, fixture.targetEc2, topology,
+                resolver, fixture.newRouteExecutor());
+
+        final var peerRequest = new PeerVpc.Request();
+        peerRequest.setSourceRegion(fixture.sourceEc2.getRegion());
+        peerRequest.setTargetRegion(fixture.targetEc2.getRegion());
+        peerRequest.setSourceVpcId(fixture.sourceVpcId);
+        peerRequest.setSourceCredentialId("simulation");
+        final var unpeerRequest = new UnpeerVpc.Request();
+        unpeerRequest.setSourceRegion(fixture.sourceEc2.getRegion());
+        unpeerRequest.setTargetRegion(fixture.targetEc2.getRegion());
+        unpeerRequest.setSourceVpcId(fixture.sourceVpcId);
+
+        for (int round = 0; round < rounds; round++) {
+            for (int invocation = 0; invocation < MAX_PEER_INVOCATIONS; invocation++) {
+                final var result = measure(fixture.simulator, "PeerVpc", () ->
+                        peerVpc.handle(peerRequest, Waiter.within(INVOCATION_BUDGET)));
+                if (result != null && PeerVpc.COMPLETED.equals(result.get("status"))) {
+                    break;
+                }
+            }
+
+            measure(fixture.simulator, "AddPeerRoute", () -> addPeerRoute.handle(fixture.newRequest(true, false)));
+            measure(fixture.simulator, "DeletePeerRoute", () ->
+                    deletePeerRoute.handle(fixture.newRequest(false, false)));
+            measure(fixture.simulator, "UnpeerVpc", () -> {
+                unpeerVpc.handle(unpeerRequest);
+                return true;
+            });
+        }
+    }
+
+    /**
+     * @return the result of the operation, or {@code null} if it fails.
+     */
+    private <T> T measure(Ec2Simulator simulator, String operation, Supplier<T> action) {
+        final var before = simulator.usage();
+        final var start = System.nanoTime();
+        T result = null;
+        RuntimeException failure = null;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            // the next invocation or round carries on as a retry would.
+            failure = e;
+        }
+
+        final var nanos = System.nanoTime() - start;
+        final var usage = simulator.usage().since(before);
+        synchronized (this) {
+            statistics.computeIfAbsent(operation, k -> new Statistics()).add(nanos, usage, result == null);
+            if (failure != null) {
+                failuresPerException.merge(operation + " " + failure.getClass().getSimpleName(), 1L, Long::sum);
+            }
+            usage.getCallsPerOperation().forEach((name, calls) -> callsPerOperation.merge(name, calls, Long::sum));
+        }
+        return result;
+    }
+
+    private synchronized void print(PrintStream out) {
+        out.printf("%-16s %8s %8s %10s %10s %10s %10s %8s%n",
+                "Operation", "Count", "Failed", "Mean ms", "Max ms", "Calls", "Calls/op", "Throttle");
+        statistics.forEach((operation, s) -> out.printf("%-16s %8d %8d %10.2f %10.2f %10d %10.1f %8d%n",
+                operation, s.count, s.failures, s.nanos / 1e6 / s.count, s.maxNanos / 1e6, s.calls,
+                (double) s.calls / s.count, s.throttles));
+
+        out.println();
+        out.printf("%-36s %10s%n", "API call", "Calls");
+        callsPerOperation.forEach((operation, calls) -> out.printf("%-36s %10d%n", operation, calls));
+
+        if (!failuresPerException.isEmpty()) {
+            out.println();
+            out.printf("%-52s %10s%n", "Failure", "Count");
+            failuresPerException.forEach((failure, count) -> out.printf("%-52s %10d%n", failure, count));
+        }
+    }
+
+    private static int argument(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    private static final class Statistics {
+        private long count;
+        private long failures;
+        private long nanos;
+        private long maxNanos;
+        private long calls;
+        private long throttles;
+
+        void add(long nanos, Ec2Simulator.Usage usage, boolean failed) {
+            this.count++;
+            this.failures += failed ? 1 : 0;
+            this.nanos += nanos;
+            this.maxNanos = Math.max(maxNanos, nanos);
+            this.calls += usage.getCalls();
+            this.throttles += usage.getThrottles();
+        }
+    }
+}
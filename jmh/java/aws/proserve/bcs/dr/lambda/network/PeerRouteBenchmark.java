@@ -0,0 +1,67 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.lambda.stub.StandardOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plans the routes to the common VPC for all the instances when adding, and for all the route tables when deleting.
+ * <p>
+ * The plans are dry runs so that every invocation sees the same tables, the changes themselves are one call each.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PeerRouteBenchmark {
+
+    @Param("50")
+    private int vpcs;
+
+    @Param("500")
+    private int routeTables;
+
+    @Param("1000")
+    private int subnets;
+
+    @Param("10000")
+    private int instances;
+
+    private NetworkFixture fixture;
+    private AddPeerRoute.Worker addPeerRoute;
+    private DeletePeerRoute.Worker deletePeerRoute;
+
+    @Setup
+    public void setUp() {
+        StandardOutput.discard();
+        fixture = new NetworkFixture(vpcs, routeTables, subnets, instances);
+        addPeerRoute = fixture.newAddPeerRoute();
+        deletePeerRoute = fixture.newDeletePeerRoute();
+    }
+
+    @Benchmark
+    public RoutePlan addRoutes() {
+        return addPeerRoute.handle(fixture.newRequest(true, true));
+    }
+
+    @Benchmark
+    public RoutePlan deleteRoutes() {
+        return deletePeerRoute.handle(fixture.newRequest(false, true));
+    }
+}
@@ -0,0 +1,49 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.lambda.stub.StandardOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to the first response of the route handlers, each in a fresh JVM with the clients replaced by
+ * in-memory stubs: the wiring of the worker, the lookup of the common VPC and the peering, and the first plan.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    private NetworkFixture fixture;
+
+    @Setup
+    public void setUp() {
+        StandardOutput.discard();
+        fixture = new NetworkFixture(5, 50, 100, 100);
+    }
+
+    @Benchmark
+    public Map<String, Object> addPeerRoute() {
+        return fixture.newAddPeerRoute().handle(fixture.newRequest(true, true)).toMap(true);
+    }
+
+    @Benchmark
+    public Map<String, Object> deletePeerRoute() {
+        return fixture.newDeletePeerRoute().handle(fixture.newRequest(false, true)).toMap(true);
+    }
+}
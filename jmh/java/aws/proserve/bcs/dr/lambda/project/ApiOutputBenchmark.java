@@ -0,0 +1,72 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.lambda.ApiOutput;
+import aws.proserve.bcs.dr.lambda.ApiResponseWriter;
+import aws.proserve.bcs.dr.lambda.dto.ImmutableResponse;
+import aws.proserve.bcs.dr.lambda.dto.Response;
+import aws.proserve.bcs.dr.lambda.stub.StandardOutput;
+import com.amazonaws.jmespath.ObjectMapperSingleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns a found project into the API Gateway response, as a map with the body as a string which the runtime then
+ * serializes, and as a stream of the whole response, plain and gzipped.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiOutputBenchmark {
+
+    @Param("5000")
+    private int items;
+
+    private final ApiResponseWriter writer = new ApiResponseWriter(ObjectMapperSingleton.getObjectMapper());
+    private final OutputStream output = OutputStream.nullOutputStream();
+    private Response response;
+
+    @Setup
+    public void setUp() {
+        StandardOutput.discard();
+        final var fixture = new ProjectFixture(items);
+        response = ImmutableResponse.builder()
+                .isSuccessful(true)
+                .result(fixture.finder.findOne(ProjectFixture.PROJECT_ID))
+                .build();
+    }
+
+    @Benchmark
+    public Map<String, Object> output() {
+        return ApiOutput.of(ObjectMapperSingleton.getObjectMapper(), response);
+    }
+
+    @Benchmark
+    public void streamOutput() throws IOException {
+        writer.write(response, false, output);
+    }
+
+    @Benchmark
+    public void streamGzipOutput() throws IOException {
+        writer.write(response, true, output);
+    }
+}
@@ -0,0 +1,57 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.lambda.stub.StandardOutput;
+import aws.proserve.bcs.dr.project.Project;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds a project through the project cache, both from the cache and from the table, as the API does.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindProjectBenchmark {
+
+    @Param("5000")
+    private int items;
+
+    private ProjectCache cache;
+    private ApiFindProjectById.Worker worker;
+
+    @Setup
+    public void setUp() {
+        StandardOutput.discard();
+        final var fixture = new ProjectFixture(items);
+        cache = new ProjectCache(fixture.finder);
+        worker = new ApiFindProjectById.Worker(cache);
+    }
+
+    @Benchmark
+    public Project cached() {
+        return worker.find(ProjectFixture.PROJECT_ID);
+    }
+
+    @Benchmark
+    public Project uncached() {
+        cache.invalidate(ProjectFixture.PROJECT_ID);
+        return worker.find(ProjectFixture.PROJECT_ID);
+    }
+}
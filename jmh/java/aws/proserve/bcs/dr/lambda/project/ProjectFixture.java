@@ -0,0 +1,62 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.lambda.stub.InMemoryDynamoDB;
+import aws.proserve.bcs.dr.lambda.stub.InMemoryProjectFinder;
+import aws.proserve.bcs.dr.project.Project;
+import aws.proserve.bcs.dr.project.States;
+import com.amazonaws.jmespath.ObjectMapperSingleton;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Seeds a project whose sub project has the given number of items in an in-memory table, and wires the project
+ * workers to it the way the project component does.
+ */
+final class ProjectFixture {
+    static final String PROJECT_ID = "benchmark";
+    static final SubProjectType TYPE = SubProjectType.S3;
+
+    final InMemoryDynamoDB dynamoDB = new InMemoryDynamoDB();
+    final DynamoDBMapper dbMapper = new DynamoDBMapper(dynamoDB, DynamoDBMapperConfig.builder()
+            .withSaveBehavior(DynamoDBMapperConfig.SaveBehavior.UPDATE_SKIP_NULL_ATTRIBUTES)
+            .build());
+    final ObjectMapper mapper = ObjectMapperSingleton.getObjectMapper();
+    final InMemoryProjectFinder finder = new InMemoryProjectFinder(dynamoDB, dbMapper);
+    final List<String> itemIds = new ArrayList<>();
+
+    ProjectFixture(int items) {
+        final var mapping = ItemMapping.of(dbMapper).get(TYPE);
+        final var list = new ArrayList<AttributeValue>(items);
+        for (int i = 0; i < items; i++) {
+            final var id = String.format("bucket-%05d", i);
+            itemIds.add(id);
+            list.add(new AttributeValue().withM(Map.of(
+                    mapping.getId(), new AttributeValue(id),
+                    mapping.getState(), new AttributeValue(i % 2 == 0 ? States.REPLICATING : States.REPLICATED))));
+        }
+
+        dynamoDB.putItem(new PutItemRequest()
+                .withTableName(finder.getTableName())
+                .withItem(Map.of(
+                        dbMapper.getTableModel(Project.class).hashKey().name(), new AttributeValue(PROJECT_ID),
+                        mapping.getSubProject(), new AttributeValue().withM(Map.of(
+                                mapping.getItems(), new AttributeValue().withL(list))))));
+
+        // the first write of the store adds the item index and the summary.
+        newStore(new ProjectCache(finder)).update(PROJECT_ID, project -> true);
+    }
+
+    ProjectStore newStore(ProjectCache cache) {
+        return new ProjectStore(dynamoDB, dbMapper, cache);
+    }
+}
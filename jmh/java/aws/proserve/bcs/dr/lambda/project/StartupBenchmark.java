@@ -0,0 +1,83 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.lambda.ApiResponseWriter;
+import aws.proserve.bcs.dr.lambda.dto.ImmutableResponse;
+import aws.proserve.bcs.dr.lambda.dto.Response;
+import aws.proserve.bcs.dr.lambda.stub.StandardOutput;
+import aws.proserve.bcs.dr.project.States;
+import com.amazonaws.jmespath.ObjectMapperSingleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to the first response of the project handlers, each in a fresh JVM: the initialization of the
+ * handler class, which builds its component with the clients of the function and primes it as the init phase of the
+ * function does, then the first request. As the clients of the handler would call AWS, the request is served by its
+ * worker wired to an in-memory table instead.
+ * <p>
+ * Seeding the table already loads the table model of the mapper, which is thus not part of the time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param("5000")
+    private int items;
+
+    private ProjectFixture fixture;
+
+    @Setup
+    public void setUp() {
+        // the component of the handler builds its clients for the region of the function.
+        System.setProperty("aws.region", System.getProperty("aws.region", "us-east-1"));
+        StandardOutput.discard();
+        fixture = new ProjectFixture(items);
+    }
+
+    @Benchmark
+    public Map<String, Object> findProject() {
+        new FindProject();
+        return new FindProject.Worker(fixture.finder).find(ProjectFixture.PROJECT_ID);
+    }
+
+    @Benchmark
+    public int findProjectById() throws IOException {
+        new ApiFindProjectById();
+        final var worker = new ApiFindProjectById.Worker(new ProjectCache(fixture.finder));
+        final var output = new ByteArrayOutputStream();
+        new ApiResponseWriter(ObjectMapperSingleton.getObjectMapper()).write(ImmutableResponse.builder()
+                .isSuccessful(true)
+                .result(worker.find(ProjectFixture.PROJECT_ID))
+                .build(), false, output);
+        return output.size();
+    }
+
+    @Benchmark
+    public Response updateItemState() {
+        new UpdateItemState();
+        final var store = fixture.newStore(new ProjectCache(fixture.finder));
+        return new UpdateStateWorker(store, ProjectFixture.TYPE)
+                .update(ProjectFixture.PROJECT_ID, fixture.itemIds.get(0), States.REPLICATED);
+    }
+}
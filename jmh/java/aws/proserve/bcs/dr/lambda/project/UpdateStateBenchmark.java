@@ -0,0 +1,77 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.lambda.dto.Response;
+import aws.proserve.bcs.dr.lambda.stub.StandardOutput;
+import aws.proserve.bcs.dr.project.States;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates the state of one item after another, in place through the item index, and by writing the whole project
+ * as done when the index is missing or stale.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpdateStateBenchmark {
+
+    @Param("5000")
+    private int items;
+
+    private ProjectFixture fixture;
+    private ProjectStore store;
+    private UpdateStateWorker worker;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        StandardOutput.discard();
+        fixture = new ProjectFixture(items);
+        store = fixture.newStore(new ProjectCache(fixture.finder));
+        worker = new UpdateStateWorker(store, ProjectFixture.TYPE);
+    }
+
+    @Benchmark
+    public Response update() {
+        final var n = next++;
+        return worker.update(ProjectFixture.PROJECT_ID, fixture.itemIds.get(n % items), nextState(n));
+    }
+
+    @Benchmark
+    public boolean updateProject() {
+        final var n = next++;
+        final var itemId = fixture.itemIds.get(n % items);
+        final var state = nextState(n);
+        return store.update(ProjectFixture.PROJECT_ID, project -> {
+            ProjectFixture.TYPE.getSubProject(project).getItems().stream()
+                    .filter(i -> i.getId().equals(itemId))
+                    .forEach(i -> UpdateStateWorker.apply(i, state, new Date()));
+            return true;
+        });
+    }
+
+    /**
+     * @return a state other than the current one, so that every update changes the summary.
+     */
+    private String nextState(int n) {
+        return (n / items + n % items) % 2 == 0 ? States.REPLICATED : States.REPLICATING;
+    }
+}
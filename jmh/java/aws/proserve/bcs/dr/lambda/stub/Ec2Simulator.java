@@ -0,0 +1,268 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.stub;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.ec2.model.VpcPeeringConnection;
+import com.amazonaws.services.ec2.model.VpcPeeringConnectionStateReason;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Simulates EC2 in several regions, each an {@link InMemoryEc2}, for load and soak tests of the network workers.
+ * <p>
+ * The simulation is deterministic for a seed, as long as the calls come in the same order:
+ * <ul>
+ * <li>The peering connections are shared by the regions of their VPCs and change their states asynchronously. A
+ * transition completes after {@code transitionCalls} calls to the simulator rather than after some time, so that a
+ * run does not depend on the speed of the machine.</li>
+ * <li>Each attempt of a call is throttled at {@code throttleRate}. The throttled attempts are retried as the SDK
+ * client does, up to {@code clientRetries} times, after which the call fails with {@code RequestLimitExceeded}.</li>
+ * <li>A deferred change of the resources, e.g. one a stack makes while it deploys, is made once the given calls to the
+ * simulator are, before the call which is due.</li>
+ * </ul>
+ * The calls, throttled attempts and errors are counted per operation, see {@link #usage()}.
+ *
+ * @apiNote All the regions share the lock of the simulator, which keeps the order of the calls and the transitions
+ * consistent across regions.
+ */
+public class Ec2Simulator {
+    static final String INITIATING_REQUEST = "initiating-request";
+    static final String PENDING_ACCEPTANCE = "pending-acceptance";
+    static final String PROVISIONING = "provisioning";
+    static final String ACTIVE = "active";
+    static final String DELETING = "deleting";
+    static final String DELETED = "deleted";
+    static final String FAILED = "failed";
+
+    private static final int CALLS = 0;
+    private static final int THROTTLES = 1;
+    private static final int ERRORS = 2;
+
+    final Map<String, Peering> peerings = new LinkedHashMap<>();
+
+    private final Random random;
+    private final Map<String, InMemoryEc2> regions = new LinkedHashMap<>();
+    private final List<Peering> transitions = new ArrayList<>();
+    private final List<Deferred> deferred = new ArrayList<>();
+    private final Map<String, long[]> operations = new TreeMap<>();
+    private double throttleRate;
+    private int clientRetries = 3;
+    private int transitionCalls = 5;
+    private int pageSize = 1000;
+    private long clock;
+    private long nextId;
+
+    public Ec2Simulator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param throttleRate the probability of an attempt to be throttled, between 0 and 1.
+     */
+    public Ec2Simulator withThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+        return this;
+    }
+
+    /**
+     * @param clientRetries the retries of a throttled call, 3 by default as the SDK client.
+     */
+    public Ec2Simulator withClientRetries(int clientRetries) {
+        this.clientRetries = clientRetries;
+        return this;
+    }
+
+    /**
+     * @param transitionCalls the calls after which a peering connection completes a transition, 5 by default.
+     */
+    public Ec2Simulator withTransitionCalls(int transitionCalls) {
+        this.transitionCalls = transitionCalls;
+        return this;
+    }
+
+    /**
+     * @param pageSize the size of a page when the request has no maximum of its own, 1000 by default.
+     */
+    public Ec2Simulator withPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public synchronized InMemoryEc2 region(String name) {
+        return regions.computeIfAbsent(name, k -> new InMemoryEc2(this, k));
+    }
+
+    /**
+     * @return the calls so far, see {@link Usage#since} for those of a part of the run.
+     */
+    public synchronized Usage usage() {
+        final var copy = new TreeMap<String, long[]>();
+        operations.forEach((operation, counts) -> copy.put(operation, counts.clone()));
+        return new Usage(copy);
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Runs a call of an operation, after completing the transitions which are due and throttling its attempts.
+     */
+    synchronized <T> T call(String operation, Supplier<T> action) {
+        clock++;
+        completeTransitions();
+
+        final var counts = operations.computeIfAbsent(operation, k -> new long[3]);
+        counts[CALLS]++;
+        for (int attempt = 0; random.nextDouble() < throttleRate; attempt++) {
+            counts[THROTTLES]++;
+            if (attempt == clientRetries) {
+                counts[ERRORS]++;
+                throw InMemoryEc2.error("RequestLimitExceeded", "Request limit exceeded.", 503);
+            }
+        }
+
+        try {
+            return action.get();
+        } catch (AmazonServiceException e) {
+            counts[ERRORS]++;
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a change of the resources which is not an API call, e.g. seeding them.
+     */
+    synchronized <T> T seed(Supplier<T> action) {
+        return action.get();
+    }
+
+    /**
+     * Makes a change of the resources which is not an API call after the given calls to the simulator.
+     */
+    public synchronized void defer(int calls, Runnable change) {
+        deferred.add(new Deferred(clock + calls, change));
+    }
+
+    String newId(String prefix) {
+        return String.format("%s-%017x", prefix, ++nextId);
+    }
+
+    /**
+     * Sets the status of the peering connection now, and the next one once it is due.
+     */
+    void transition(Peering peering, String status, String next) {
+        peering.connection.setStatus(new VpcPeeringConnectionStateReason()
+                .withCode(status)
+                .withMessage(status));
+        peering.next = next;
+        peering.dueAt = clock + transitionCalls;
+        if (next != null && !transitions.contains(peering)) {
+            transitions.add(peering);
+        }
+    }
+
+    private void completeTransitions() {
+        final var changes = new ArrayList<Deferred>();
+        deferred.removeIf(change -> change.dueAt <= clock && changes.add(change));
+        changes.forEach(change -> change.change.run());
+
+        final var due = new ArrayList<Peering>();
+        transitions.removeIf(peering -> peering.dueAt <= clock && due.add(peering));
+
+        for (var peering : due) {
+            var next = peering.next;
+            if (PENDING_ACCEPTANCE.equals(next)) {
+                final var accepter = regions.get(peering.accepterRegion);
+                if (accepter == null || !accepter.hasVpc(peering.connection.getAccepterVpcInfo().getVpcId())) {
+                    next = FAILED;
+                }
+            }
+            transition(peering, next, null);
+        }
+    }
+
+    private static final class Deferred {
+        private final long dueAt;
+        private final Runnable change;
+
+        Deferred(long dueAt, Runnable change) {
+            this.dueAt = dueAt;
+            this.change = change;
+        }
+    }
+
+    static final class Peering {
+        final VpcPeeringConnection connection;
+        final String requesterRegion;
+        final String accepterRegion;
+        String next;
+        long dueAt;
+
+        Peering(VpcPeeringConnection connection, String requesterRegion, String accepterRegion) {
+            this.connection = connection;
+            this.requesterRegion = requesterRegion;
+            this.accepterRegion = accepterRegion;
+        }
+
+        String getStatus() {
+            return connection.getStatus().getCode();
+        }
+    }
+
+    public static final class Usage {
+        private final Map<String, long[]> operations;
+
+        private Usage(Map<String, long[]> operations) {
+            this.operations = operations;
+        }
+
+        /**
+         * @return the calls made after the earlier usage.
+         */
+        public Usage since(Usage earlier) {
+            final var delta = new TreeMap<String, long[]>();
+            operations.forEach((operation, counts) -> {
+                final var before = earlier.operations.getOrDefault(operation, new long[3]);
+                final var difference = new long[3];
+                for (int i = 0; i < counts.length; i++) {
+                    difference[i] = counts[i] - before[i];
+                }
+                if (difference[CALLS] > 0) {
+                    delta.put(operation, difference);
+                }
+            });
+            return new Usage(delta);
+        }
+
+        public long getCalls() {
+            return sum(CALLS);
+        }
+
+        public long getThrottles() {
+            return sum(THROTTLES);
+        }
+
+        public long getErrors() {
+            return sum(ERRORS);
+        }
+
+        public Map<String, Long> getCallsPerOperation() {
+            final var calls = new TreeMap<String, Long>();
+            operations.forEach((operation, counts) -> calls.put(operation, counts[CALLS]));
+            return calls;
+        }
+
+        private long sum(int index) {
+            return operations.values().stream().mapToLong(counts -> counts[index]).sum();
+        }
+    }
+}
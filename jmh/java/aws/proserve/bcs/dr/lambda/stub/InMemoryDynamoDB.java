@@ -0,0 +1,300 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.stub;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AmazonDynamoDBException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the items of the tables in memory, for single-key reads and writes.
+ * <p>
+ * The expressions cover what the project store uses: projections of nested paths, conditions of {@code AND}-ed comparisons
+ * and {@code attribute_exists}, and updates with {@code SET}, {@code if_not_exists}, {@code +} and {@code ADD}.
+ * Other calls are not supported.
+ */
+public class InMemoryDynamoDB extends AbstractAmazonDynamoDB {
+    private final Map<String, Table> tables = new HashMap<>();
+
+    @Override
+    public synchronized GetItemResult getItem(GetItemRequest request) {
+        final var item = table(request.getTableName()).items.get(request.getKey());
+        if (item == null) {
+            return new GetItemResult();
+        }
+
+        if (request.getProjectionExpression() == null) {
+            return new GetItemResult().withItem(copy(item));
+        }
+
+        final var expression = new Expression(request.getExpressionAttributeNames(), null);
+        final var projected = new HashMap<String, AttributeValue>();
+        for (var path : split(request.getProjectionExpression(), ',')) {
+            expression.project(item, projected, expression.path(path));
+        }
+        return new GetItemResult().withItem(projected);
+    }
+
+    @Override
+    public synchronized PutItemResult putItem(PutItemRequest request) {
+        final var table = table(request.getTableName());
+        final var key = table.key(request.getItem());
+        final var current = table.items.get(key);
+        new Expression(request.getExpressionAttributeNames(), request.getExpressionAttributeValues())
+                .check(current == null ? Map.of() : current, request.getConditionExpression());
+
+        table.items.put(key, copy(request.getItem()));
+        return new PutItemResult();
+    }
+
+    @Override
+    public synchronized UpdateItemResult updateItem(UpdateItemRequest request) {
+        final var table = table(request.getTableName());
+        final var current = table.items.get(request.getKey());
+        final var expression = new Expression(
+                request.getExpressionAttributeNames(), request.getExpressionAttributeValues());
+        expression.check(current == null ? Map.of() : current, request.getConditionExpression());
+
+        // updated in place, as copying a whole project per update would outweigh the update itself.
+        final var item = current == null ? copy(request.getKey()) : current;
+        expression.update(item, request.getUpdateExpression());
+        table.items.put(request.getKey(), item);
+        return new UpdateItemResult();
+    }
+
+    @Override
+    public synchronized DeleteItemResult deleteItem(DeleteItemRequest request) {
+        table(request.getTableName()).items.remove(request.getKey());
+        return new DeleteItemResult();
+    }
+
+    /**
+     * Declares the attributes of the key of a table, before any other call to it.
+     */
+    public synchronized void createTable(String tableName, String... keyNames) {
+        tables.put(tableName, new Table(Set.of(keyNames)));
+    }
+
+    private Table table(String name) {
+        final var table = tables.get(name);
+        if (table == null) {
+            throw new ResourceNotFoundException("Requested resource not found: Table: " + name + " not found");
+        }
+        return table;
+    }
+
+    private static Map<String, AttributeValue> copy(Map<String, AttributeValue> item) {
+        final var copy = new HashMap<String, AttributeValue>();
+        item.forEach((name, value) -> copy.put(name, copy(value)));
+        return copy;
+    }
+
+    private static AttributeValue copy(AttributeValue value) {
+        final var copy = value.clone();
+        if (value.getM() != null) {
+            copy.setM(copy(value.getM()));
+        }
+        if (value.getL() != null) {
+            final var list = new ArrayList<AttributeValue>(value.getL().size());
+            value.getL().forEach(v -> list.add(copy(v)));
+            copy.setL(list);
+        }
+        return copy;
+    }
+
+    /**
+     * Splits at the separators outside of parentheses.
+     */
+    private static List<String> split(String expression, char separator) {
+        final var parts = new ArrayList<String>();
+        var depth = 0;
+        var from = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            final var c = expression.charAt(i);
+            depth += c == '(' ? 1 : c == ')' ? -1 : 0;
+            if (c == separator && depth == 0) {
+                parts.add(expression.substring(from, i).trim());
+                from = i + 1;
+            }
+        }
+        parts.add(expression.substring(from).trim());
+        return parts;
+    }
+
+    private static final class Table {
+        private final Set<String> keyNames;
+        private final Map<Map<String, AttributeValue>, Map<String, AttributeValue>> items = new HashMap<>();
+
+        Table(Set<String> keyNames) {
+            this.keyNames = keyNames;
+        }
+
+        Map<String, AttributeValue> key(Map<String, AttributeValue> item) {
+            final var key = new HashMap<String, AttributeValue>();
+            keyNames.forEach(name -> key.put(name, item.get(name)));
+            return key;
+        }
+    }
+
+    private static final class Expression {
+        private final Map<String, String> names;
+        private final Map<String, AttributeValue> values;
+
+        Expression(Map<String, String> names, Map<String, AttributeValue> values) {
+            this.names = names == null ? Map.of() : names;
+            this.values = values == null ? Map.of() : values;
+        }
+
+        /**
+         * @return the path as names and list indexes.
+         */
+        List<Object> path(String expression) {
+            final var path = new ArrayList<Object>();
+            for (var segment : expression.trim().split("\\.")) {
+                final var bracket = segment.indexOf('[');
+                final var name = bracket < 0 ? segment : segment.substring(0, bracket);
+                path.add(name.startsWith("#") ? names.get(name) : name);
+                if (bracket >= 0) {
+                    for (var index : segment.substring(bracket + 1, segment.length() - 1).split("]\\[")) {
+                        path.add(Integer.valueOf(index));
+                    }
+                }
+            }
+            return path;
+        }
+
+        AttributeValue get(Map<String, AttributeValue> item, List<Object> path) {
+            AttributeValue value = item.get((String) path.get(0));
+            for (int i = 1; i < path.size() && value != null; i++) {
+                value = child(value, path.get(i));
+            }
+            return value;
+        }
+
+        void set(Map<String, AttributeValue> item, List<Object> path, AttributeValue value) {
+            if (path.size() == 1) {
+                item.put((String) path.get(0), value);
+                return;
+            }
+
+            final var parent = get(item, path.subList(0, path.size() - 1));
+            final var last = path.get(path.size() - 1);
+            if (parent != null && last instanceof String && parent.getM() != null) {
+                parent.getM().put((String) last, value);
+            } else if (parent != null && last instanceof Integer && parent.getL() != null
+                    && (Integer) last < parent.getL().size()) {
+                parent.getL().set((Integer) last, value);
+            } else {
+                throw new AmazonDynamoDBException("The document path provided in the update expression is invalid");
+            }
+        }
+
+        void project(Map<String, AttributeValue> item, Map<String, AttributeValue> projected, List<Object> path) {
+            final var value = get(item, path);
+            if (value == null) {
+                return;
+            }
+
+            var target = projected;
+            for (int i = 0; i < path.size() - 1; i++) {
+                final var name = (String) path.get(i);
+                target = target.computeIfAbsent(name, k -> new AttributeValue().withM(new HashMap<>())).getM();
+            }
+            target.put((String) path.get(path.size() - 1), copy(value));
+        }
+
+        void check(Map<String, AttributeValue> item, String condition) {
+            if (condition == null) {
+                return;
+            }
+
+            for (var clause : condition.split(" AND ")) {
+                final boolean passed;
+                if (clause.startsWith("attribute_exists(")) {
+                    passed = get(item, path(argument(clause))) != null;
+                } else if (clause.startsWith("attribute_not_exists(")) {
+                    passed = get(item, path(argument(clause))) == null;
+                } else {
+                    final var sides = clause.split("=");
+                    passed = values.get(sides[1].trim()).equals(get(item, path(sides[0])));
+                }
+
+                if (!passed) {
+                    throw new ConditionalCheckFailedException("The conditional request failed");
+                }
+            }
+        }
+
+        void update(Map<String, AttributeValue> item, String update) {
+            final var add = update.indexOf(" ADD ");
+            final var set = add < 0 ? update : update.substring(0, add);
+            if (set.startsWith("SET ")) {
+                for (var assignment : split(set.substring("SET ".length()), ',')) {
+                    final var sides = assignment.split("=", 2);
+                    set(item, path(sides[0]), evaluate(item, sides[1].trim()));
+                }
+            }
+
+            if (add >= 0) {
+                for (var addition : split(update.substring(add + " ADD ".length()), ',')) {
+                    final var sides = addition.split(" ");
+                    final var path = path(sides[0]);
+                    final var current = get(item, path);
+                    set(item, path, current == null ? values.get(sides[1]) : sum(current, values.get(sides[1])));
+                }
+            }
+        }
+
+        private AttributeValue evaluate(Map<String, AttributeValue> item, String operand) {
+            final var plus = split(operand, '+');
+            if (plus.size() > 1) {
+                return sum(evaluate(item, plus.get(0)), evaluate(item, plus.get(1)));
+            }
+
+            if (operand.startsWith(":")) {
+                return values.get(operand);
+            }
+
+            if (operand.startsWith("if_not_exists(")) {
+                final var arguments = split(argument(operand), ',');
+                final var current = get(item, path(arguments.get(0)));
+                return current == null ? values.get(arguments.get(1)) : current;
+            }
+            return get(item, path(operand));
+        }
+
+        private static AttributeValue child(AttributeValue value, Object segment) {
+            if (segment instanceof Integer) {
+                final var list = value.getL();
+                return list == null || (Integer) segment >= list.size() ? null : list.get((Integer) segment);
+            }
+            return value.getM() == null ? null : value.getM().get(segment);
+        }
+
+        private static AttributeValue sum(AttributeValue a, AttributeValue b) {
+            return new AttributeValue().withN(new BigDecimal(a.getN()).add(new BigDecimal(b.getN())).toString());
+        }
+
+        private static String argument(String call) {
+            return call.substring(call.indexOf('(') + 1, call.lastIndexOf(')'));
+        }
+    }
+}
@@ -0,0 +1,594 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.stub;
+
+import com.amazonaws.services.ec2.AbstractAmazonEC2;
+import com.amazonaws.services.ec2.model.AcceptVpcPeeringConnectionRequest;
+import com.amazonaws.services.ec2.model.AcceptVpcPeeringConnectionResult;
+import com.amazonaws.services.ec2.model.AmazonEC2Exception;
+import com.amazonaws.services.ec2.model.CreateRouteRequest;
+import com.amazonaws.services.ec2.model.CreateRouteResult;
+import com.amazonaws.services.ec2.model.CreateVpcPeeringConnectionRequest;
+import com.amazonaws.services.ec2.model.CreateVpcPeeringConnectionResult;
+import com.amazonaws.services.ec2.model.DeleteRouteRequest;
+import com.amazonaws.services.ec2.model.DeleteRouteResult;
+import com.amazonaws.services.ec2.model.DeleteVpcPeeringConnectionRequest;
+import com.amazonaws.services.ec2.model.DeleteVpcPeeringConnectionResult;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.DescribeRouteTablesRequest;
+import com.amazonaws.services.ec2.model.DescribeRouteTablesResult;
+import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
+import com.amazonaws.services.ec2.model.DescribeSubnetsResult;
+import com.amazonaws.services.ec2.model.DescribeVpcPeeringConnectionsRequest;
+import com.amazonaws.services.ec2.model.DescribeVpcPeeringConnectionsResult;
+import com.amazonaws.services.ec2.model.DescribeVpcsRequest;
+import com.amazonaws.services.ec2.model.DescribeVpcsResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.GroupIdentifier;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.ModifyVpcPeeringConnectionOptionsRequest;
+import com.amazonaws.services.ec2.model.ModifyVpcPeeringConnectionOptionsResult;
+import com.amazonaws.services.ec2.model.PeeringConnectionOptions;
+import com.amazonaws.services.ec2.model.PeeringConnectionOptionsRequest;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.ec2.model.Route;
+import com.amazonaws.services.ec2.model.RouteTable;
+import com.amazonaws.services.ec2.model.RouteTableAssociation;
+import com.amazonaws.services.ec2.model.Subnet;
+import com.amazonaws.services.ec2.model.Tag;
+import com.amazonaws.services.ec2.model.Vpc;
+import com.amazonaws.services.ec2.model.VpcPeeringConnection;
+import com.amazonaws.services.ec2.model.VpcPeeringConnectionOptionsDescription;
+import com.amazonaws.services.ec2.model.VpcPeeringConnectionVpcInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the VPCs, subnets, route tables and instances of one region of an {@link Ec2Simulator} in memory, for the
+ * calls of the network workers, together with the peering connections of the region.
+ * <p>
+ * The describe calls support the IDs, the filters on the attributes the workers use and pagination, returning copies
+ * so that later changes do not show through. Filters whose values are all {@code null} are ignored. The calls check
+ * the states and regions of the peering connections as EC2 does, e.g. a peering is accepted in the region of the
+ * accepter VPC once it is pending acceptance.
+ * <p>
+ * The {@code add} methods seed the resources without counting as calls.
+ */
+public class InMemoryEc2 extends AbstractAmazonEC2 {
+    private final Map<String, Vpc> vpcs = new LinkedHashMap<>();
+    private final Map<String, Subnet> subnets = new LinkedHashMap<>();
+    private final Map<String, RouteTable> routeTables = new LinkedHashMap<>();
+    private final Map<String, Instance> instances = new LinkedHashMap<>();
+    private final Ec2Simulator simulator;
+    private final String region;
+
+    InMemoryEc2(Ec2Simulator simulator, String region) {
+        this.simulator = simulator;
+        this.region = region;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public Vpc addVpc(String name, String cidr) {
+        return simulator.seed(() -> {
+            final var vpc = new Vpc()
+                    .withVpcId(simulator.newId("vpc"))
+                    .withCidrBlock(cidr)
+                    .withState("available")
+                    .withTags(new Tag("Name", name));
+            vpcs.put(vpc.getVpcId(), vpc);
+            return vpc;
+        });
+    }
+
+    public Subnet addSubnet(String vpcId, String name, String cidr) {
+        return simulator.seed(() -> {
+            final var subnet = new Subnet()
+                    .withSubnetId(simulator.newId("subnet"))
+                    .withVpcId(getVpc(vpcId).getVpcId())
+                    .withCidrBlock(cidr)
+                    .withState("available")
+                    .withTags(new Tag("Name", name));
+            subnets.put(subnet.getSubnetId(), subnet);
+            return subnet;
+        });
+    }
+
+    /**
+     * @param main whether the table is the main route table of the VPC.
+     */
+    public RouteTable addRouteTable(String vpcId, boolean main, String... subnetIds) {
+        return simulator.seed(() -> {
+            final var table = new RouteTable()
+                    .withRouteTableId(simulator.newId("rtb"))
+                    .withVpcId(vpcId)
+                    .withRoutes(new Route()
+                            .withDestinationCidrBlock(getVpc(vpcId).getCidrBlock())
+                            .withGatewayId("local")
+                            .withOrigin("CreateRouteTable")
+                            .withState("active"));
+            if (main) {
+                table.withAssociations(new RouteTableAssociation()
+                        .withRouteTableAssociationId(simulator.newId("rtbassoc"))
+                        .withRouteTableId(table.getRouteTableId())
+                        .withMain(true));
+            }
+            for (var subnetId : subnetIds) {
+                table.withAssociations(new RouteTableAssociation()
+                        .withRouteTableAssociationId(simulator.newId("rtbassoc"))
+                        .withRouteTableId(table.getRouteTableId())
+                        .withSubnetId(subnets.get(subnetId).getSubnetId())
+                        .withMain(false));
+            }
+            routeTables.put(table.getRouteTableId(), table);
+            return table;
+        });
+    }
+
+    public Instance addInstance(String subnetId, String securityGroupId) {
+        return simulator.seed(() -> {
+            final var instance = new Instance()
+                    .withInstanceId(simulator.newId("i"))
+                    .withVpcId(subnets.get(subnetId).getVpcId())
+                    .withSubnetId(subnetId)
+                    .withSecurityGroups(new GroupIdentifier().withGroupId(securityGroupId));
+            instances.put(instance.getInstanceId(), instance);
+            return instance;
+        });
+    }
+
+    /**
+     * Adds a peering connection from a VPC of this region in the given status, without going through the states
+     * before it.
+     */
+    public VpcPeeringConnection addPeering(String requesterVpcId, InMemoryEc2 accepter, String accepterVpcId,
+                                           String status) {
+        return simulator.seed(() -> {
+            final var peering = newPeering(requesterVpcId, accepter.region, accepterVpcId);
+            simulator.transition(peering, status, null);
+            return peering.connection;
+        });
+    }
+
+    /**
+     * Adds a route without the checks of {@link #createRoute}, e.g. to seed the tables.
+     */
+    public void addRoute(String routeTableId, String cidr, String peerId) {
+        simulator.seed(() -> {
+            putRoute(getRouteTable(routeTableId), cidr, peerId);
+            return null;
+        });
+    }
+
+    @Override
+    public DescribeVpcsResult describeVpcs(DescribeVpcsRequest request) {
+        return simulator.call("DescribeVpcs", () -> {
+            final var found = select(vpcs, request.getVpcIds(), request.getFilters(), "vpc-id",
+                    "InvalidVpcID.NotFound", (vpc, name) -> {
+                        switch (name) {
+                            case "vpc-id":
+                                return List.of(vpc.getVpcId());
+                            case "cidr":
+                                return List.of(vpc.getCidrBlock());
+                            default:
+                                return tag(vpc.getTags(), name);
+                        }
+                    });
+            return new DescribeVpcsResult().withVpcs(copy(found, Vpc::clone));
+        });
+    }
+
+    @Override
+    public DescribeSubnetsResult describeSubnets(DescribeSubnetsRequest request) {
+        return simulator.call("DescribeSubnets", () -> {
+            final var found = select(subnets, request.getSubnetIds(), request.getFilters(), "subnet-id",
+                    "InvalidSubnetID.NotFound", (subnet, name) -> {
+                        switch (name) {
+                            case "subnet-id":
+                                return List.of(subnet.getSubnetId());
+                            case "vpc-id":
+                                return List.of(subnet.getVpcId());
+                            default:
+                                return tag(subnet.getTags(), name);
+                        }
+                    });
+            final var page = page(found, request.getNextToken(), request.getMaxResults());
+            return new DescribeSubnetsResult()
+                    .withSubnets(copy(page.items, Subnet::clone))
+                    .withNextToken(page.nextToken);
+        });
+    }
+
+    @Override
+    public DescribeRouteTablesResult describeRouteTables(DescribeRouteTablesRequest request) {
+        return simulator.call("DescribeRouteTables", () -> {
+            final var found = select(routeTables, request.getRouteTableIds(), request.getFilters(),
+                    "route-table-id", "InvalidRouteTableID.NotFound", (table, name) -> {
+                        switch (name) {
+                            case "route-table-id":
+                                return List.of(table.getRouteTableId());
+                            case "vpc-id":
+                                return List.of(table.getVpcId());
+                            case "association.subnet-id":
+                                return table.getAssociations().stream()
+                                        .map(RouteTableAssociation::getSubnetId)
+                                        .filter(id -> id != null)
+                                        .collect(Collectors.toList());
+                            case "association.main":
+                                return List.of(String.valueOf(table.getAssociations().stream()
+                                        .anyMatch(RouteTableAssociation::getMain)));
+                            default:
+                                return tag(table.getTags(), name);
+                        }
+                    });
+            final var page = page(found, request.getNextToken(), request.getMaxResults());
+            return new DescribeRouteTablesResult()
+                    .withRouteTables(copy(page.items, RouteTable::clone))
+                    .withNextToken(page.nextToken);
+        });
+    }
+
+    @Override
+    public DescribeInstancesResult describeInstances(DescribeInstancesRequest request) {
+        return simulator.call("DescribeInstances", () -> {
+            final var found = select(instances, request.getInstanceIds(), request.getFilters(), "instance-id",
+                    "InvalidInstanceID.NotFound", (instance, name) -> {
+                        switch (name) {
+                            case "instance-id":
+                                return List.of(instance.getInstanceId());
+                            case "vpc-id":
+                                return List.of(instance.getVpcId());
+                            case "subnet-id":
+                                return List.of(instance.getSubnetId());
+                            default:
+                                return tag(instance.getTags(), name);
+                        }
+                    });
+            final var page = page(found, request.getNextToken(), request.getMaxResults());
+            return new DescribeInstancesResult()
+                    .withReservations(new Reservation()
+                            .withReservationId(simulator.newId("r"))
+                            .withInstances(copy(page.items, Instance::clone)))
+                    .withNextToken(page.nextToken);
+        });
+    }
+
+    @Override
+    public DescribeVpcPeeringConnectionsResult describeVpcPeeringConnections(
+            DescribeVpcPeeringConnectionsRequest request) {
+        return simulator.call("DescribeVpcPeeringConnections", () -> {
+            final var visible = new LinkedHashMap<String, VpcPeeringConnection>();
+            simulator.peerings.forEach((id, peering) -> {
+                if (isVisible(peering)) {
+                    visible.put(id, peering.connection);
+                }
+            });
+
+            final var found = select(visible, request.getVpcPeeringConnectionIds(), request.getFilters(),
+                    "vpc-peering-connection-id", "InvalidVpcPeeringConnectionID.NotFound", (peering, name) -> {
+                        switch (name) {
+                            case "vpc-peering-connection-id":
+                                return List.of(peering.getVpcPeeringConnectionId());
+                            case "status-code":
+                                return List.of(peering.getStatus().getCode());
+                            case "accepter-vpc-info.vpc-id":
+                                return List.of(peering.getAccepterVpcInfo().getVpcId());
+                            case "requester-vpc-info.vpc-id":
+                                return List.of(peering.getRequesterVpcInfo().getVpcId());
+                            default:
+                                return tag(peering.getTags(), name);
+                        }
+                    });
+            final var page = page(found, request.getNextToken(), request.getMaxResults());
+            return new DescribeVpcPeeringConnectionsResult()
+                    .withVpcPeeringConnections(copy(page.items, VpcPeeringConnection::clone))
+                    .withNextToken(page.nextToken);
+        });
+    }
+
+    @Override
+    public CreateVpcPeeringConnectionResult createVpcPeeringConnection(CreateVpcPeeringConnectionRequest request) {
+        return simulator.call("CreateVpcPeeringConnection", () -> {
+            getVpc(request.getVpcId());
+            final var peering = newPeering(request.getVpcId(),
+                    request.getPeerRegion() == null ? region : request.getPeerRegion(),
+                    request.getPeerVpcId());
+            simulator.transition(peering, Ec2Simulator.INITIATING_REQUEST, Ec2Simulator.PENDING_ACCEPTANCE);
+            return new CreateVpcPeeringConnectionResult().withVpcPeeringConnection(peering.connection.clone());
+        });
+    }
+
+    @Override
+    public AcceptVpcPeeringConnectionResult acceptVpcPeeringConnection(AcceptVpcPeeringConnectionRequest request) {
+        return simulator.call("AcceptVpcPeeringConnection", () -> {
+            final var peering = getPeering(request.getVpcPeeringConnectionId());
+            if (!region.equals(peering.accepterRegion)) {
+                throw error("OperationNotPermitted", String.format(
+                        "The VPC peering connection %s must be accepted in the region of the accepter VPC.",
+                        request.getVpcPeeringConnectionId()));
+            }
+            checkStatus(peering, Ec2Simulator.PENDING_ACCEPTANCE);
+
+            simulator.transition(peering, Ec2Simulator.PROVISIONING, Ec2Simulator.ACTIVE);
+            return new AcceptVpcPeeringConnectionResult().withVpcPeeringConnection(peering.connection.clone());
+        });
+    }
+
+    @Override
+    public ModifyVpcPeeringConnectionOptionsResult modifyVpcPeeringConnectionOptions(
+            ModifyVpcPeeringConnectionOptionsRequest request) {
+        return simulator.call("ModifyVpcPeeringConnectionOptions", () -> {
+            final var peering = getPeering(request.getVpcPeeringConnectionId());
+            checkStatus(peering, Ec2Simulator.ACTIVE);
+
+            final var result = new ModifyVpcPeeringConnectionOptionsResult();
+            final var connection = peering.connection;
+            if (request.getRequesterPeeringConnectionOptions() != null) {
+                checkRegion(peering.requesterRegion, "requester");
+                connection.setRequesterVpcInfo(connection.getRequesterVpcInfo().clone()
+                        .withPeeringOptions(options(request.getRequesterPeeringConnectionOptions())));
+                result.setRequesterPeeringConnectionOptions(new PeeringConnectionOptions()
+                        .withAllowDnsResolutionFromRemoteVpc(
+                                request.getRequesterPeeringConnectionOptions().getAllowDnsResolutionFromRemoteVpc()));
+            }
+            if (request.getAccepterPeeringConnectionOptions() != null) {
+                checkRegion(peering.accepterRegion, "accepter");
+                connection.setAccepterVpcInfo(connection.getAccepterVpcInfo().clone()
+                        .withPeeringOptions(options(request.getAccepterPeeringConnectionOptions())));
+                result.setAccepterPeeringConnectionOptions(new PeeringConnectionOptions()
+                        .withAllowDnsResolutionFromRemoteVpc(
+                                request.getAccepterPeeringConnectionOptions().getAllowDnsResolutionFromRemoteVpc()));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public DeleteVpcPeeringConnectionResult deleteVpcPeeringConnection(DeleteVpcPeeringConnectionRequest request) {
+        return simulator.call("DeleteVpcPeeringConnection", () -> {
+            final var peering = getPeering(request.getVpcPeeringConnectionId());
+            if (!peering.getStatus().equals(Ec2Simulator.PENDING_ACCEPTANCE)) {
+                checkStatus(peering, Ec2Simulator.ACTIVE);
+            }
+
+            simulator.transition(peering, Ec2Simulator.DELETING, Ec2Simulator.DELETED);
+            return new DeleteVpcPeeringConnectionResult().withReturn(true);
+        });
+    }
+
+    @Override
+    public CreateRouteResult createRoute(CreateRouteRequest request) {
+        return simulator.call("CreateRoute", () -> {
+            final var table = getRouteTable(request.getRouteTableId());
+            if (findRoute(table, request.getDestinationCidrBlock()) != null) {
+                throw error("RouteAlreadyExists", String.format("The route identified by %s already exists.",
+                        request.getDestinationCidrBlock()));
+            }
+            if (request.getVpcPeeringConnectionId() != null) {
+                checkStatus(getPeering(request.getVpcPeeringConnectionId()), Ec2Simulator.ACTIVE);
+            }
+
+            putRoute(table, request.getDestinationCidrBlock(), request.getVpcPeeringConnectionId());
+            return new CreateRouteResult().withReturn(true);
+        });
+    }
+
+    @Override
+    public DeleteRouteResult deleteRoute(DeleteRouteRequest request) {
+        return simulator.call("DeleteRoute", () -> {
+            final var table = getRouteTable(request.getRouteTableId());
+            final var route = findRoute(table, request.getDestinationCidrBlock());
+            if (route == null) {
+                throw error("InvalidRoute.NotFound", String.format("no route with destination-cidr-block %s in %s",
+                        request.getDestinationCidrBlock(), table.getRouteTableId()));
+            }
+
+            final var routes = new ArrayList<>(table.getRoutes());
+            routes.remove(route);
+            table.setRoutes(routes);
+            return new DeleteRouteResult();
+        });
+    }
+
+    boolean hasVpc(String vpcId) {
+        return vpcs.containsKey(vpcId);
+    }
+
+    private Vpc getVpc(String vpcId) {
+        final var vpc = vpcs.get(vpcId);
+        if (vpc == null) {
+            throw error("InvalidVpcID.NotFound", String.format("The vpc ID '%s' does not exist", vpcId));
+        }
+        return vpc;
+    }
+
+    /**
+     * @return the peering connection, if it can be seen in this region.
+     */
+    private Ec2Simulator.Peering getPeering(String peerId) {
+        final var peering = simulator.peerings.get(peerId);
+        if (peering == null || !isVisible(peering)) {
+            throw error("InvalidVpcPeeringConnectionID.NotFound",
+                    String.format("The vpcPeeringConnection ID '%s' does not exist", peerId));
+        }
+        return peering;
+    }
+
+    /**
+     * A peering connection reaches the region of the accepter VPC once it is no longer initiating the request.
+     */
+    private boolean isVisible(Ec2Simulator.Peering peering) {
+        return region.equals(peering.requesterRegion) || region.equals(peering.accepterRegion)
+                && !Ec2Simulator.INITIATING_REQUEST.equals(peering.getStatus());
+    }
+
+    private void checkStatus(Ec2Simulator.Peering peering, String status) {
+        if (!status.equals(peering.getStatus())) {
+            throw error("InvalidStateTransition", String.format("Invalid state transition for %s, in state %s",
+                    peering.connection.getVpcPeeringConnectionId(), peering.getStatus()));
+        }
+    }
+
+    private void checkRegion(String expected, String side) {
+        if (!region.equals(expected)) {
+            throw error("OperationNotPermitted", String.format(
+                    "The %s options must be modified in the region of the %s VPC.", side, side));
+        }
+    }
+
+    private Ec2Simulator.Peering newPeering(String requesterVpcId, String accepterRegion, String accepterVpcId) {
+        final var accepter = accepterRegion.equals(region) ? this : simulator.region(accepterRegion);
+        final var connection = new VpcPeeringConnection()
+                .withVpcPeeringConnectionId(simulator.newId("pcx"))
+                .withRequesterVpcInfo(vpcInfo(this, requesterVpcId))
+                .withAccepterVpcInfo(vpcInfo(accepter, accepterVpcId));
+        final var peering = new Ec2Simulator.Peering(connection, region, accepterRegion);
+        simulator.peerings.put(connection.getVpcPeeringConnectionId(), peering);
+        return peering;
+    }
+
+    private static VpcPeeringConnectionVpcInfo vpcInfo(InMemoryEc2 ec2, String vpcId) {
+        final var vpc = ec2.vpcs.get(vpcId);
+        return new VpcPeeringConnectionVpcInfo()
+                .withVpcId(vpcId)
+                .withRegion(ec2.region)
+                .withCidrBlock(vpc == null ? null : vpc.getCidrBlock());
+    }
+
+    private static VpcPeeringConnectionOptionsDescription options(PeeringConnectionOptionsRequest request) {
+        return new VpcPeeringConnectionOptionsDescription()
+                .withAllowDnsResolutionFromRemoteVpc(request.getAllowDnsResolutionFromRemoteVpc());
+    }
+
+    private static void putRoute(RouteTable table, String cidr, String peerId) {
+        final var routes = new ArrayList<>(table.getRoutes());
+        routes.add(new Route()
+                .withDestinationCidrBlock(cidr)
+                .withVpcPeeringConnectionId(peerId)
+                .withOrigin("CreateRoute")
+                .withState("active"));
+        table.setRoutes(routes);
+    }
+
+    private RouteTable getRouteTable(String routeTableId) {
+        final var table = routeTables.get(routeTableId);
+        if (table == null) {
+            throw error("InvalidRouteTableID.NotFound",
+                    String.format("The routeTable ID '%s' does not exist", routeTableId));
+        }
+        return table;
+    }
+
+    private static Route findRoute(RouteTable table, String cidr) {
+        return table.getRoutes().stream()
+                .filter(r -> cidr.equals(r.getDestinationCidrBlock()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * @return the resources with the IDs, or all of them without IDs, which match all the filters. A filter on the
+     * ID attribute is looked up directly rather than matched against every resource.
+     */
+    private static <T> List<T> select(Map<String, T> resources, List<String> ids, List<Filter> filters,
+                                      String idFilter, String notFoundCode,
+                                      BiFunction<T, String, Collection<String>> attribute) {
+        Collection<T> candidates = resources.values();
+        if (ids != null && !ids.isEmpty()) {
+            candidates = new ArrayList<>();
+            for (var id : ids) {
+                final var resource = resources.get(id);
+                if (resource == null) {
+                    throw error(notFoundCode, String.format("The ID '%s' does not exist", id));
+                }
+                candidates.add(resource);
+            }
+        }
+
+        final var effective = filters == null ? List.<Filter>of() : filters.stream()
+                .filter(f -> f != null && f.getName() != null)
+                .collect(Collectors.toList());
+        for (var filter : effective) {
+            if (filter.getName().equals(idFilter) && candidates == resources.values()) {
+                candidates = filter.getValues().stream()
+                        .map(resources::get)
+                        .filter(r -> r != null)
+                        .collect(Collectors.toList());
+            }
+        }
+
+        final var found = new ArrayList<T>();
+        for (var resource : candidates) {
+            if (effective.stream().allMatch(f -> matches(f, attribute.apply(resource, f.getName())))) {
+                found.add(resource);
+            }
+        }
+        return found;
+    }
+
+    private static boolean matches(Filter filter, Collection<String> values) {
+        final Set<String> wanted = filter.getValues().stream()
+                .filter(v -> v != null)
+                .collect(Collectors.toSet());
+        return wanted.isEmpty() || values.stream().anyMatch(wanted::contains);
+    }
+
+    private static Collection<String> tag(List<Tag> tags, String name) {
+        if (tags == null || !name.startsWith("tag:")) {
+            return List.of();
+        }
+        return tags.stream()
+                .filter(t -> t.getKey().equals(name.substring("tag:".length())))
+                .map(Tag::getValue)
+                .collect(Collectors.toList());
+    }
+
+    private <T> Page<T> page(List<T> items, String nextToken, Integer maxResults) {
+        final int from;
+        try {
+            from = nextToken == null ? 0 : Integer.parseInt(nextToken);
+        } catch (NumberFormatException e) {
+            throw error("InvalidPaginationToken", String.format("The token '%s' is invalid", nextToken));
+        }
+        final var to = Math.min(items.size(), from + (maxResults == null ? simulator.getPageSize() : maxResults));
+        return new Page<>(items.subList(from, to), to < items.size() ? String.valueOf(to) : null);
+    }
+
+    private static <T> List<T> copy(List<T> items, UnaryOperator<T> clone) {
+        return items.stream().map(clone).collect(Collectors.toList());
+    }
+
+    static AmazonEC2Exception error(String code, String message) {
+        return error(code, message, 400);
+    }
+
+    static AmazonEC2Exception error(String code, String message, int statusCode) {
+        final var exception = new AmazonEC2Exception(message);
+        exception.setErrorCode(code);
+        exception.setStatusCode(statusCode);
+        exception.setServiceName("AmazonEC2");
+        return exception;
+    }
+
+    private static final class Page<T> {
+        private final List<T> items;
+        private final String nextToken;
+
+        Page(List<T> items, String nextToken) {
+            this.items = items;
+            this.nextToken = nextToken;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.stub;
+
+import com.amazonaws.services.lambda.AbstractAWSLambda;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.ResourceNotFoundException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Invokes the registered functions in the calling thread with their payload, whatever the invocation type.
+ * Other calls are not supported.
+ */
+public class InMemoryLambda extends AbstractAWSLambda {
+    private final Map<String, Consumer<String>> functions = new HashMap<>();
+
+    public synchronized InMemoryLambda register(String functionName, Consumer<String> function) {
+        functions.put(functionName, function);
+        return this;
+    }
+
+    @Override
+    public InvokeResult invoke(InvokeRequest request) {
+        final Consumer<String> function;
+        synchronized (this) {
+            function = functions.get(request.getFunctionName());
+        }
+        if (function == null) {
+            throw new ResourceNotFoundException("Function not found: " + request.getFunctionName());
+        }
+
+        final var payload = request.getPayload();
+        function.accept(payload == null ? null : StandardCharsets.UTF_8.decode(payload.duplicate()).toString());
+        return new InvokeResult().withStatusCode(202);
+    }
+}
@@ -0,0 +1,64 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.stub;
+
+import aws.proserve.bcs.dr.project.Project;
+import aws.proserve.bcs.dr.project.ProjectFinder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+
+import java.util.Map;
+
+/**
+ * Finds the projects in an {@link InMemoryDynamoDB}, converting them with the table model of the mapper as the
+ * project store does, so that both see the same items.
+ */
+public class InMemoryProjectFinder extends ProjectFinder {
+    private final InMemoryDynamoDB dynamoDB;
+    private final DynamoDBMapperTableModel<Project> tableModel;
+    private final String tableName;
+
+    public InMemoryProjectFinder(InMemoryDynamoDB dynamoDB, DynamoDBMapper dbMapper) {
+        super(dbMapper);
+        this.dynamoDB = dynamoDB;
+        this.tableModel = dbMapper.getTableModel(Project.class);
+        this.tableName = dbMapper.generateCreateTableRequest(Project.class).getTableName();
+        dynamoDB.createTable(tableName, tableModel.hashKey().name());
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    @Override
+    public Project findOne(String id) {
+        final var item = dynamoDB.getItem(new GetItemRequest()
+                .withTableName(tableName)
+                .withKey(key(id))
+                .withConsistentRead(true)).getItem();
+        return item == null ? null : tableModel.unconvert(item);
+    }
+
+    @Override
+    public void save(Project project) {
+        dynamoDB.putItem(new PutItemRequest()
+                .withTableName(tableName)
+                .withItem(tableModel.convert(project)));
+    }
+
+    @Override
+    public void delete(Project project) {
+        dynamoDB.deleteItem(new DeleteItemRequest()
+                .withTableName(tableName)
+                .withKey(key(project.getId())));
+    }
+
+    private Map<String, AttributeValue> key(String id) {
+        return Map.of(tableModel.hashKey().name(), new AttributeValue(id));
+    }
+}
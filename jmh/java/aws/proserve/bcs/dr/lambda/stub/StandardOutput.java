@@ -0,0 +1,21 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.stub;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+public final class StandardOutput {
+
+    private StandardOutput() {
+    }
+
+    /**
+     * Discards the standard output of the benchmark fork, where every invocation writes its embedded metrics. The
+     * metrics are still built, only not printed.
+     */
+    public static void discard() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+}
@@ -0,0 +1,55 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda;
+
+import aws.proserve.bcs.dr.lambda.dto.Response;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The API Gateway proxy response of a {@link Response}: its status code, headers and body, kept in one place for
+ * the map output and for {@link ApiResponseWriter}.
+ */
+public final class ApiOutput {
+    static final String BODY = "body";
+
+    private ApiOutput() {
+    }
+
+    /**
+     * @return the proxy response, with the response serialized as its body.
+     */
+    public static Map<String, Object> of(ObjectMapper mapper, Response response) {
+        final var output = envelope(false);
+        try {
+            output.put(BODY, mapper.writeValueAsString(response));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Unable to serialize response", e);
+        }
+        return output;
+    }
+
+    /**
+     * @param gzip whether the body is gzipped and base64 encoded.
+     * @return the proxy response without its body.
+     */
+    static Map<String, Object> envelope(boolean gzip) {
+        final var headers = new LinkedHashMap<String, String>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Access-Control-Allow-Origin", "*");
+        if (gzip) {
+            headers.put("Content-Encoding", "gzip");
+        }
+
+        final var envelope = new LinkedHashMap<String, Object>();
+        envelope.put("statusCode", 200);
+        envelope.put("headers", headers);
+        envelope.put("isBase64Encoded", gzip);
+        return envelope;
+    }
+}
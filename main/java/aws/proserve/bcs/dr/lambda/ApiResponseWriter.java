@@ -0,0 +1,141 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda;
+
+import aws.proserve.bcs.dr.lambda.dto.Response;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a response as the API Gateway proxy response to a stream.
+ * <p>
+ * The status code and headers come from {@link ApiOutput}, as those of the map output do. The response is serialized
+ * once by a reused writer into the {@code body}, escaped on the way, instead of into a string which the runtime then
+ * serializes again. The body is streamed straight to the output, so that a large project is neither held in memory
+ * twice nor delayed until it is all serialized. A failure half way throws out of the handler, for which the runtime
+ * reports an error instead of the partial output.
+ */
+public final class ApiResponseWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] BODY_PREFIX = (",\"" + ApiOutput.BODY + "\":\"").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] prefix;
+    private final byte[] gzipPrefix;
+    private final ObjectWriter writer;
+
+    public ApiResponseWriter(ObjectMapper mapper) {
+        this.prefix = prefix(mapper, false);
+        this.gzipPrefix = prefix(mapper, true);
+        this.writer = mapper.writerFor(Response.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * @param gzip whether to compress the body and base64 encode it, which needs the binary media types of the API to
+     *             cover {@code application/json}.
+     */
+    public void write(Response response, boolean gzip, OutputStream output) throws IOException {
+        final var buffered = new BufferedOutputStream(output, BUFFER_SIZE);
+        buffered.write(gzip ? gzipPrefix : prefix);
+        if (gzip) {
+            try (var body = new GZIPOutputStream(Base64.getEncoder().wrap(new Unclosed(buffered)), BUFFER_SIZE)) {
+                writer.writeValue(body, response);
+            }
+        } else {
+            writer.writeValue(new Escaped(buffered), response);
+        }
+        buffered.write(SUFFIX);
+        buffered.flush();
+    }
+
+    /**
+     * @return the proxy response up to the opening quote of the body.
+     */
+    private static byte[] prefix(ObjectMapper mapper, boolean gzip) {
+        try {
+            final var envelope = mapper.writeValueAsBytes(ApiOutput.envelope(gzip));
+            final var prefix = Arrays.copyOf(envelope, envelope.length - 1 + BODY_PREFIX.length);
+            System.arraycopy(BODY_PREFIX, 0, prefix, envelope.length - 1, BODY_PREFIX.length);
+            return prefix;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Unable to serialize response envelope", e);
+        }
+    }
+
+    /**
+     * Escapes the JSON written through it as the content of a JSON string. Multi-byte characters pass through, as
+     * none of their bytes is an ASCII one.
+     */
+    private static final class Escaped extends FilterOutputStream {
+        private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+        Escaped(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (b == '"' || b == '\\') {
+                out.write('\\');
+                out.write(b);
+            } else if (b >= 0 && b < 0x20) {
+                out.write(new byte[]{'\\', 'u', '0', '0', HEX[b >> 4], HEX[b & 0xf]});
+            } else {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            var from = offset;
+            for (int i = offset; i < offset + length; i++) {
+                final var b = bytes[i];
+                if (b == '"' || b == '\\' || (b >= 0 && b < 0x20)) {
+                    out.write(bytes, from, i - from);
+                    write(b);
+                    from = i + 1;
+                }
+            }
+            out.write(bytes, from, offset + length - from);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Keeps the output of the function open once the body is written.
+     */
+    private static final class Unclosed extends FilterOutputStream {
+
+        Unclosed(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda;
+
+import aws.proserve.bcs.dr.lambda.dto.Response;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Writes the API Gateway proxy response of an {@link ApiHandler} straight to the output stream of the function, for
+ * the handlers whose results are large, see {@link ApiResponseWriter}.
+ * <p>
+ * With {@code API_GZIP_ENABLED}, a client which accepts gzip gets the body compressed and base64 encoded, which needs
+ * the binary media types of the API to cover {@code application/json}.
+ */
+public abstract class ApiStreamHandler implements RequestStreamHandler {
+    private static final boolean GZIP_ENABLED = EnvConfig.getBoolean("API_GZIP_ENABLED", false);
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ObjectReader reader;
+    private final ApiResponseWriter writer;
+
+    protected ApiStreamHandler(ObjectMapper mapper) {
+        this.reader = mapper.readerFor(APIGatewayProxyRequestEvent.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.writer = new ApiResponseWriter(mapper);
+    }
+
+    protected abstract Response handle(APIGatewayProxyRequestEvent event, Context context);
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        final APIGatewayProxyRequestEvent event = reader.readValue(input);
+        writer.write(handle(event, context), GZIP_ENABLED && acceptsGzip(event.getHeaders()), output);
+    }
+
+    /**
+     * @return whether the {@code Accept-Encoding} header lists gzip without a zero weight.
+     */
+    static boolean acceptsGzip(Map<String, String> headers) {
+        if (headers == null) {
+            return false;
+        }
+
+        for (var header : headers.entrySet()) {
+            if (!"Accept-Encoding".equalsIgnoreCase(header.getKey()) || header.getValue() == null) {
+                continue;
+            }
+            for (var coding : header.getValue().split(",")) {
+                final var parameters = coding.split(";");
+                if (parameters[0].trim().equalsIgnoreCase("gzip")
+                        && (parameters.length == 1 || !parameters[1].trim().matches("q=0(\\.0*)?"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda;
+
+import aws.proserve.bcs.dr.lambda.dto.ImmutableResponse;
+import aws.proserve.bcs.dr.project.Project;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Moves the expensive one-off work of a handler into the init phase of the function, so that it is paid before the
+ * first request, and is captured by the snapshot when the function runs with snapshot-restore startup.
+ * <p>
+ * Handlers trigger it from their static initializers through the {@code build} methods of the components.
+ * <p>
+ * A restore keeps the clients of the execution role of the function, whose credential provider resolves the
+ * credentials of the restored function by itself, and drops those built from a resolved {@code Credential}, which
+ * may have expired in the snapshot.
+ */
+public final class Bootstrap implements Resource {
+    private static final Logger log = LoggerFactory.getLogger(Bootstrap.class);
+
+    /**
+     * @apiNote Keep a strong reference, the global context only holds resources weakly.
+     */
+    private static final Bootstrap INSTANCE = new Bootstrap();
+
+    private final List<Runnable> restoreHooks = new CopyOnWriteArrayList<>();
+
+    static {
+        Core.getGlobalContext().register(INSTANCE);
+    }
+
+    private Bootstrap() {
+    }
+
+    /**
+     * Warms up the serializers of Jackson and the table model of the DynamoDB mapper for {@link Project}, which are
+     * otherwise built reflectively by the first request.
+     */
+    public static void prime(ObjectMapper mapper, DynamoDBMapper dbMapper) {
+        final var start = System.nanoTime();
+        try {
+            dbMapper.getTableModel(Project.class);
+            mapper.readValue(mapper.writeValueAsBytes(new Project()), Project.class);
+            mapper.writeValueAsBytes(ImmutableResponse.builder().isSuccessful(true).build());
+        } catch (Exception e) {
+            log.warn("Unable to prime serializers, continue without them", e);
+        }
+        log.debug("Primed in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Builds the clients of a handler ahead of its first request, which loads their service models, signers and
+     * HTTP stacks, otherwise paid by that request.
+     */
+    public static void prime(Supplier<?> clients) {
+        final var start = System.nanoTime();
+        try {
+            clients.get();
+        } catch (RuntimeException e) {
+            log.warn("Unable to prime clients, continue without them", e);
+        }
+        log.debug("Primed clients in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Registers a hook to run after the function is restored from a snapshot, e.g. to drop state that must not
+     * outlive the snapshot.
+     */
+    public static void onRestore(Runnable hook) {
+        INSTANCE.restoreHooks.add(hook);
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        log.debug("Take snapshot with {} restore hooks", restoreHooks.size());
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        restoreHooks.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,157 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda;
+
+import aws.proserve.bcs.dr.exception.PortalException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Persists the progress of a multi-step workflow in the table of {@code CHECKPOINT_TABLE}, so that a later invocation
+ * resumes from the last completed step.
+ * <p>
+ * A checkpoint is an item keyed by its name in the string attribute {@value #NAME}, holding string values and a
+ * revision. A save is conditioned on the revision it read, so that two invocations of the same workflow never both
+ * complete a step.
+ *
+ * @apiNote The table is not the projects table, whose readers, e.g. the scans of the projects, take every item for a
+ * project.
+ */
+@Singleton
+public class Checkpoints {
+    static final String NAME = "name";
+
+    private static final String VALUES = "checkpoint";
+    private static final String REVISION = "revision";
+
+    private final AmazonDynamoDB dynamoDB;
+    private final String tableName;
+
+    @Inject
+    Checkpoints(AmazonDynamoDB dynamoDB) {
+        this(dynamoDB, System.getenv("CHECKPOINT_TABLE"));
+    }
+
+    Checkpoints(AmazonDynamoDB dynamoDB, String tableName) {
+        this.dynamoDB = dynamoDB;
+        this.tableName = tableName;
+    }
+
+    /**
+     * @return the checkpoint saved under the name, or an empty one to start with.
+     */
+    public Checkpoint find(String name) {
+        final var item = dynamoDB.getItem(new GetItemRequest()
+                .withTableName(tableName())
+                .withKey(key(name))
+                .withConsistentRead(true)).getItem();
+        if (item == null) {
+            return new Checkpoint(name, 0, Map.of());
+        }
+
+        final var values = new HashMap<String, String>();
+        Optional.ofNullable(item.get(VALUES))
+                .map(AttributeValue::getM)
+                .ifPresent(m -> m.forEach((k, v) -> values.put(k, v.getS())));
+        return new Checkpoint(name, Long.parseLong(item.get(REVISION).getN()), values);
+    }
+
+    /**
+     * @return the checkpoint as saved.
+     * @throws PortalException if the checkpoint has been saved by someone else since it was read.
+     */
+    public Checkpoint save(Checkpoint checkpoint) {
+        final var values = new HashMap<String, AttributeValue>();
+        checkpoint.values.forEach((k, v) -> values.put(k, new AttributeValue(v)));
+
+        final var item = new HashMap<>(key(checkpoint.name));
+        item.put(VALUES, new AttributeValue().withM(values));
+        item.put(REVISION, new AttributeValue().withN(String.valueOf(checkpoint.revision + 1)));
+
+        final var request = new PutItemRequest()
+                .withTableName(tableName())
+                .withItem(item);
+        if (checkpoint.revision == 0) {
+            request.withConditionExpression("attribute_not_exists(#name)")
+                    .withExpressionAttributeNames(Map.of("#name", NAME));
+        } else {
+            request.withConditionExpression("#revision = :revision")
+                    .withExpressionAttributeNames(Map.of("#revision", REVISION))
+                    .withExpressionAttributeValues(Map.of(
+                            ":revision", new AttributeValue().withN(String.valueOf(checkpoint.revision))));
+        }
+
+        try {
+            dynamoDB.putItem(request);
+        } catch (ConditionalCheckFailedException e) {
+            throw new PortalException("Checkpoint [" + checkpoint.name + "] is saved concurrently", e);
+        }
+        return new Checkpoint(checkpoint.name, checkpoint.revision + 1, checkpoint.values);
+    }
+
+    public void delete(String name) {
+        dynamoDB.deleteItem(new DeleteItemRequest()
+                .withTableName(tableName())
+                .withKey(key(name)));
+    }
+
+    /**
+     * @throws IllegalStateException if {@code CHECKPOINT_TABLE} is not set, checked on use so that the functions
+     *                               which never save a checkpoint need not set it.
+     */
+    private String tableName() {
+        if (tableName == null) {
+            throw new IllegalStateException("CHECKPOINT_TABLE is not set");
+        }
+        return tableName;
+    }
+
+    private static Map<String, AttributeValue> key(String name) {
+        return Map.of(NAME, new AttributeValue(name));
+    }
+
+    /**
+     * An immutable snapshot of a checkpoint, change it with {@link #with} and save the copy.
+     */
+    public static class Checkpoint {
+        private final String name;
+        private final long revision;
+        private final Map<String, String> values;
+
+        private Checkpoint(String name, long revision, Map<String, String> values) {
+            this.name = name;
+            this.revision = revision;
+            this.values = Collections.unmodifiableMap(values);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isNew() {
+            return revision == 0;
+        }
+
+        public String get(String key) {
+            return values.get(key);
+        }
+
+        public Checkpoint with(String key, String value) {
+            final var copy = new HashMap<>(values);
+            copy.put(key, value);
+            return new Checkpoint(name, revision, copy);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda;
+
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import aws.proserve.bcs.dr.secret.Credential;
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Builds regional clients once per region and credential, so that components of the same container, and the
+ * {@code Source} and {@code Target} sides of one component, share a client and its connection pool.
+ * <p>
+ * A client is counted per acquisition, and shut down once the last component which acquired it releases it, see
+ * {@link ComponentClients}.
+ * <p>
+ * The HTTP settings are tunable with {@code AWS_MAX_CONNECTIONS}, {@code AWS_CONNECTION_TTL_MILLIS} and
+ * {@code AWS_TCP_KEEP_ALIVE}.
+ */
+public final class ClientFactory {
+    private static final ClientConfiguration configuration = new ClientConfiguration()
+            .withMaxConnections(EnvConfig.getInt("AWS_MAX_CONNECTIONS", ClientConfiguration.DEFAULT_MAX_CONNECTIONS))
+            .withConnectionTTL(EnvConfig.getLong("AWS_CONNECTION_TTL_MILLIS", 60_000))
+            .withTcpKeepAlive(EnvConfig.getBoolean("AWS_TCP_KEEP_ALIVE", true));
+
+    private static final Map<Key, Shared> clients = new ConcurrentHashMap<>();
+
+    private ClientFactory() {
+    }
+
+    /**
+     * @return a copy of the shared HTTP settings, for clients not built by this factory.
+     */
+    public static ClientConfiguration configuration() {
+        return new ClientConfiguration(configuration);
+    }
+
+    /**
+     * @param credential {@code null} refers to the execution role of this function.
+     * @return a shared client, to be given back with {@link #release(Object)}.
+     */
+    public static AmazonEC2 ec2(@Nullable String region, @Nullable Credential credential) {
+        return (AmazonEC2) acquire(new Key(AmazonEC2.class, region, CredentialKey.of(credential)),
+                () -> AmazonEC2ClientBuilder.standard()
+                        .withClientConfiguration(configuration())
+                        .withRequestHandlers(ApiCallRecorder.INSTANCE)
+                        .withRegion(region)
+                        .withCredentials(Credential.toProvider(credential))
+                        .build());
+    }
+
+    /**
+     * @param credential {@code null} refers to the execution role of this function.
+     * @return a shared client, to be given back with {@link #release(Object)}.
+     */
+    public static AmazonCloudFormation cloudFormation(@Nullable String region, @Nullable Credential credential) {
+        return (AmazonCloudFormation) acquire(new Key(AmazonCloudFormation.class, region, CredentialKey.of(credential)),
+                () -> AmazonCloudFormationClientBuilder.standard()
+                        .withClientConfiguration(configuration())
+                        .withRequestHandlers(ApiCallRecorder.INSTANCE)
+                        .withRegion(region)
+                        .withCredentials(Credential.toProvider(credential))
+                        .build());
+    }
+
+    /**
+     * Gives back a client of this factory, which is shut down once no one else holds it.
+     */
+    public static void release(Object client) {
+        clients.forEach((key, shared) -> {
+            if (shared.client != client) {
+                return;
+            }
+            if (clients.computeIfPresent(key, (k, v) -> --v.references > 0 ? v : null) == null) {
+                ((AmazonWebServiceClient) client).shutdown();
+            }
+        });
+    }
+
+    private static Object acquire(Key key, Supplier<Object> builder) {
+        return clients.compute(key, (k, shared) -> {
+            final var acquired = shared == null ? new Shared(builder.get()) : shared;
+            acquired.references++;
+            return acquired;
+        }).client;
+    }
+
+    private static final class Shared {
+        private final Object client;
+        private int references;
+
+        Shared(Object client) {
+            this.client = client;
+        }
+    }
+
+    private static final class Key {
+        private final Class<?> type;
+        private final String region;
+        private final CredentialKey credential;
+
+        Key(Class<?> type, String region, CredentialKey credential) {
+            this.type = type;
+            this.region = region;
+            this.credential = credential;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final var that = (Key) o;
+            return type == that.type
+                    && Objects.equals(region, that.region)
+                    && credential.equals(that.credential);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, region, credential);
+        }
+    }
+}
@@ -6,16 +6,16 @@ package aws.proserve.bcs.dr.lambda;
 
 import aws.proserve.bcs.dr.lambda.annotation.Source;
 import aws.proserve.bcs.dr.lambda.annotation.Target;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
 import aws.proserve.bcs.dr.secret.Credential;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.jmespath.ObjectMapperSingleton;
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
-import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
@@ -35,56 +35,67 @@ import javax.inject.Singleton;
 @Singleton
 public class CommonModule {
 
+    /**
+     * @apiNote Lambda always sets the region of the function, use it directly instead of walking the region provider
+     * chain when building the clients.
+     */
+    private static final String REGION = System.getenv("AWS_REGION");
+
     @Provides
     @Singleton
-    AmazonS3 s3() {
-        return AmazonS3ClientBuilder.standard().enableForceGlobalBucketAccess().build();
+    AmazonS3 s3(ComponentClients clients) {
+        return clients.own(configure(AmazonS3ClientBuilder.standard()).enableForceGlobalBucketAccess().build());
     }
 
     @Provides
     @Singleton
-    AmazonDynamoDB amazonDynamoDB() {
-        return AmazonDynamoDBClientBuilder.defaultClient();
+    AmazonDynamoDB amazonDynamoDB(ComponentClients clients) {
+        return clients.own(configure(AmazonDynamoDBClientBuilder.standard()).build());
     }
 
     @Provides
     @Singleton
-    AWSLambda lambda() {
-        return AWSLambdaClientBuilder.defaultClient();
+    AWSLambda lambda(ComponentClients clients) {
+        return clients.own(configure(AWSLambdaClientBuilder.standard()).build());
     }
 
+    /**
+     * @apiNote The projects of this package are written by {@code ProjectStore} only. A save with this mapper updates
+     * the modelled attributes in place instead of replacing the item, so that it keeps the revision, item index and
+     * summary attributes which the model of the shared library does not know of.
+     */
     @Provides
     @Singleton
     DynamoDBMapper dynamoDBMapper(AmazonDynamoDB amazonDynamoDB) {
         return new DynamoDBMapper(amazonDynamoDB, DynamoDBMapperConfig.builder()
-                .withSaveBehavior(DynamoDBMapperConfig.SaveBehavior.CLOBBER)
+                .withSaveBehavior(DynamoDBMapperConfig.SaveBehavior.UPDATE_SKIP_NULL_ATTRIBUTES)
                 .build());
     }
 
     @Provides
+    @Singleton
     @Source
-    AmazonEC2 sourceEc2(@Nullable @Source String region, @Nullable Credential credential) {
-        return AmazonEC2ClientBuilder.standard()
-                .withRegion(region)
-                .withCredentials(Credential.toProvider(credential))
-                .build();
+    AmazonEC2 sourceEc2(@Nullable @Source String region, @Nullable Credential credential, ComponentClients clients) {
+        return clients.share(ClientFactory.ec2(region, credential));
     }
 
+    /**
+     * @apiNote The target side keeps using the execution role of this function, it shares the client with the source
+     * side only when the source also uses the execution role in the same region.
+     */
     @Provides
+    @Singleton
     @Target
-    AmazonEC2 targetEc2(@Nullable @Target String region) {
-        return AmazonEC2ClientBuilder.standard()
-                .withRegion(region)
-                .build();
+    AmazonEC2 targetEc2(@Nullable @Target String region, ComponentClients clients) {
+        return clients.share(ClientFactory.ec2(region, null));
     }
 
     @Provides
+    @Singleton
     @Target
-    AmazonCloudFormation targetCfn(@Nullable @Target String region, @Nullable Credential credential) {
-        return AmazonCloudFormationClientBuilder.standard()
-                .withRegion(region)
-                .withCredentials(Credential.toProvider(credential))
-                .build();
+    AmazonCloudFormation targetCfn(@Nullable @Target String region, @Nullable Credential credential,
+                                   ComponentClients clients) {
+        return clients.share(ClientFactory.cloudFormation(region, credential));
     }
 
     @Provides
@@ -95,8 +106,8 @@ public class CommonModule {
 
     @Provides
     @Singleton
-    AWSSecretsManager secretsManager() {
-        return AWSSecretsManagerClientBuilder.defaultClient();
+    AWSSecretsManager secretsManager(ComponentClients clients) {
+        return clients.own(configure(AWSSecretsManagerClientBuilder.standard()).build());
     }
 
     /**
@@ -104,7 +115,13 @@ public class CommonModule {
      */
     @Provides
     @Singleton
-    AWSSimpleSystemsManagement ssm() {
-        return AWSSimpleSystemsManagementClientBuilder.defaultClient();
+    AWSSimpleSystemsManagement ssm(ComponentClients clients) {
+        return clients.own(configure(AWSSimpleSystemsManagementClientBuilder.standard()).build());
+    }
+
+    private static <T extends AwsClientBuilder<T, ?>> T configure(T builder) {
+        builder.setClientConfiguration(ClientFactory.configuration());
+        builder.setRequestHandlers(ApiCallRecorder.INSTANCE);
+        return REGION == null ? builder : builder.withRegion(REGION);
     }
 }
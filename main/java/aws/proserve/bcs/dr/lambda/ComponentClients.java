@@ -0,0 +1,74 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda;
+
+import com.amazonaws.AmazonWebServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the AWS clients a component builds, so that they are shut down with the component once it is dropped from
+ * a cache, instead of keeping their connection pools until the container ends. The clients of {@link ClientFactory}
+ * are given back to it instead, as other components may share them.
+ */
+@Singleton
+public class ComponentClients implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ComponentClients.class);
+
+    private final List<AmazonWebServiceClient> clients = new ArrayList<>();
+    private final List<Object> shared = new ArrayList<>();
+    private boolean closed;
+
+    @Inject
+    ComponentClients() {
+    }
+
+    /**
+     * @return the client, to be shut down by {@link #close()}.
+     */
+    public synchronized <T> T own(T client) {
+        if (client instanceof AmazonWebServiceClient) {
+            clients.add((AmazonWebServiceClient) client);
+        }
+        return client;
+    }
+
+    /**
+     * @return the client of {@link ClientFactory}, to be released by {@link #close()}.
+     */
+    public synchronized <T> T share(T client) {
+        shared.add(client);
+        return client;
+    }
+
+    @Override
+    public void close() {
+        final List<AmazonWebServiceClient> owned;
+        final List<Object> released;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            owned = new ArrayList<>(clients);
+            released = new ArrayList<>(shared);
+            clients.clear();
+            shared.clear();
+        }
+
+        released.forEach(ClientFactory::release);
+        for (var client : owned) {
+            try {
+                client.shutdown();
+            } catch (RuntimeException e) {
+                log.warn("Unable to shut down client of {}", client.getServiceName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda;
+
+import aws.proserve.bcs.dr.secret.Credential;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * Identifies a {@link Credential} for caching purpose without holding the secret itself.
+ * A rotated secret results in a different key, so cached clients built with the old secret are not reused.
+ */
+public final class CredentialKey {
+    private static final CredentialKey DEFAULT = new CredentialKey(null, 0);
+
+    private final String accessKeyId;
+    private final int secretHash;
+
+    private CredentialKey(String accessKeyId, int secretHash) {
+        this.accessKeyId = accessKeyId;
+        this.secretHash = secretHash;
+    }
+
+    /**
+     * @param credential {@code null} refers to the execution role of this function.
+     */
+    public static CredentialKey of(@Nullable Credential credential) {
+        if (credential == null) {
+            return DEFAULT;
+        }
+
+        final var credentials = Credential.toProvider(credential).getCredentials();
+        return new CredentialKey(credentials.getAWSAccessKeyId(), Objects.hashCode(credentials.getAWSSecretKey()));
+    }
+
+    /**
+     * @return whether it refers to the execution role of this function.
+     */
+    public boolean isDefault() {
+        return this == DEFAULT;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CredentialKey)) {
+            return false;
+        }
+        final var that = (CredentialKey) o;
+        return secretHash == that.secretHash && Objects.equals(accessKeyId, that.accessKeyId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accessKeyId, secretHash);
+    }
+
+    @Override
+    public String toString() {
+        return accessKeyId == null ? "default" : accessKeyId;
+    }
+}
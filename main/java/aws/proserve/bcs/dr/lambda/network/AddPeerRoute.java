@@ -5,6 +5,7 @@ package aws.proserve.bcs.dr.lambda.network;
 
 import aws.proserve.bcs.dr.lambda.annotation.Source;
 import aws.proserve.bcs.dr.lambda.annotation.Target;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
 import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.model.CreateRouteRequest;
 import com.amazonaws.services.ec2.model.RouteTable;
@@ -12,15 +13,23 @@ import com.amazonaws.services.lambda.runtime.Context;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Map;
 
 public class AddPeerRoute extends PeerRouteBase {
 
+    static {
+        VpcComponent.prime(VpcComponent::addPeerRoute);
+    }
+
     @Override
-    public void handleRequest(PeerRouteBase.Request request, Context context) {
-        final var credential = VpcComponent.getCredentialByProject(request.getProjectId());
-        VpcComponent.build(request.getSourceRegion(), request.getTargetRegion(), credential)
-                .addPeerRoute()
-                .handle(request);
+    public Map<String, Object> handleRequest(PeerRouteBase.Request request, Context context) {
+        try (var invocation = ApiCallRecorder.begin("AddPeerRoute")) {
+            return VpcComponent.withCredentialByProject(request.getProjectId(), credential ->
+                    VpcComponent.build(request.getSourceRegion(), request.getTargetRegion(), credential)
+                            .addPeerRoute()
+                            .handle(request)
+                            .toMap(request.isDryRun()));
+        }
     }
 
     @Singleton
@@ -28,17 +37,24 @@ public class AddPeerRoute extends PeerRouteBase {
 
         @Inject
         Worker(@Source AmazonEC2 sourceEc2,
-               @Target AmazonEC2 targetEc2) {
-            super(sourceEc2, targetEc2, Worker::addRoute);
+               @Target AmazonEC2 targetEc2,
+               CommonVpcTopology commonVpcTopology,
+               PeeringResolver peeringResolver,
+               RouteExecutor routeExecutor) {
+            super(sourceEc2, targetEc2, commonVpcTopology, peeringResolver, routeExecutor, Worker::addRoute);
         }
 
-        private static void addRoute(AmazonEC2 ec2, RouteTable table, String cidr, String peerId) {
+        private static boolean addRoute(AmazonEC2 ec2, RouteTable table, String cidr, String peerId, boolean dryRun) {
             final var tableId = table.getRouteTableId();
 
             if (table.getRoutes().stream()
                     .anyMatch(r -> peerId.equals(r.getVpcPeeringConnectionId()))) {
                 log.info("Route to peer VPC on route table {} exists, skip.", tableId);
-                return;
+                return false;
+            }
+
+            if (dryRun) {
+                return true;
             }
 
             log.info("Add a new route to peer VPC in route table {}, cidr {}, peerId {}", tableId, cidr, peerId);
@@ -46,6 +62,7 @@ public class AddPeerRoute extends PeerRouteBase {
                     .withRouteTableId(tableId)
                     .withDestinationCidrBlock(cidr)
                     .withVpcPeeringConnectionId(peerId));
+            return true;
         }
     }
 }
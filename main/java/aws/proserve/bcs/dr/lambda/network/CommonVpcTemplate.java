@@ -0,0 +1,122 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.lambda.Bootstrap;
+import aws.proserve.bcs.dr.lambda.util.EmbeddedMetrics;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import aws.proserve.bcs.dr.lambda.util.ExpiringCache;
+import aws.proserve.bcs.dr.s3.S3Constants;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.simplesystemsmanagement.AWSSimpleSystemsManagement;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersRequest;
+import com.amazonaws.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Reads the template of the common VPC stack, keeping it per container.
+ * <p>
+ * The bucket is read from the parameter store at most once per {@code BUCKET_PARAMETER_TTL_MINUTES}. The template is
+ * fetched again only if its ETag changes, with a conditional GET which returns no content otherwise.
+ *
+ * @apiNote Both are kept statically, as S3 and SSM use the execution role at the default region for every component.
+ */
+@Singleton
+class CommonVpcTemplate {
+    private static final Logger log = LoggerFactory.getLogger(CommonVpcTemplate.class);
+
+    private static final ExpiringCache<String, String> buckets = new ExpiringCache<>(1,
+            Duration.ofMinutes(EnvConfig.getLong("BUCKET_PARAMETER_TTL_MINUTES", 15)));
+
+    private static Template template;
+
+    static {
+        Bootstrap.onRestore(CommonVpcTemplate::invalidateAll);
+    }
+
+    private final AmazonS3 s3;
+    private final AWSSimpleSystemsManagement ssm;
+
+    @Inject
+    CommonVpcTemplate(AmazonS3 s3, AWSSimpleSystemsManagement ssm) {
+        this.s3 = s3;
+        this.ssm = ssm;
+    }
+
+    /**
+     * Only the lookup and the swap of the kept template are guarded, the conditional GET is not, so that the regions
+     * of {@link DeployCommonVpcs} fetch it in parallel. Concurrent misses each read the template, the last one is
+     * kept.
+     */
+    String getBody() {
+        final var bucket = buckets.get(S3Constants.PARAM_BUCKET, this::getBucket);
+        final var cached = findTemplate(bucket);
+        final var request = new GetObjectRequest(bucket, S3Constants.COMMON_VPC_JSON);
+        if (cached != null) {
+            request.withNonmatchingETagConstraint(cached.etag);
+        }
+
+        final var object = s3.getObject(request);
+        EmbeddedMetrics.of("Operation", "CommonVpcTemplate")
+                .count("TemplateCacheHits", object == null ? 1 : 0)
+                .count("TemplateCacheMisses", object == null ? 0 : 1)
+                .emit();
+        if (object == null) {
+            return cached.body;
+        }
+
+        try (object) {
+            final var body = new String(IOUtils.toByteArray(object.getObjectContent()), StandardCharsets.UTF_8);
+            final var read = new Template(bucket, object.getObjectMetadata().getETag(), body);
+            keepTemplate(read);
+            log.debug("Read template {} of {}", read.etag, bucket);
+            return body;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read template of common VPC", e);
+        }
+    }
+
+    private String getBucket(String name) {
+        final var parameters = ssm.getParameters(new GetParametersRequest()
+                .withNames(name)).getParameters();
+        if (parameters.isEmpty()) {
+            throw new IllegalStateException("Unable to find bucket at " + name);
+        }
+        return parameters.get(0).getValue();
+    }
+
+    private static synchronized Template findTemplate(String bucket) {
+        return template != null && template.bucket.equals(bucket) ? template : null;
+    }
+
+    private static synchronized void keepTemplate(Template read) {
+        template = read;
+    }
+
+    static synchronized void invalidateAll() {
+        buckets.invalidateAll();
+        template = null;
+    }
+
+    private static final class Template {
+        private final String bucket;
+        private final String etag;
+        private final String body;
+
+        Template(String bucket, String etag, String body) {
+            this.bucket = bucket;
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.exception.PortalException;
+import aws.proserve.bcs.dr.lambda.Bootstrap;
+import aws.proserve.bcs.dr.lambda.annotation.Target;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import aws.proserve.bcs.dr.lambda.util.ExpiringCache;
+import aws.proserve.bcs.dr.vpc.Filters;
+import aws.proserve.bcs.dr.vpc.VpcConstants;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeRouteTablesRequest;
+import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
+import com.amazonaws.services.ec2.model.DescribeVpcsRequest;
+import com.amazonaws.services.ec2.model.Tag;
+import com.amazonaws.services.simplesystemsmanagement.AWSSimpleSystemsManagement;
+import com.amazonaws.services.simplesystemsmanagement.model.DeleteParameterRequest;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParameterRequest;
+import com.amazonaws.services.simplesystemsmanagement.model.ParameterNotFoundException;
+import com.amazonaws.services.simplesystemsmanagement.model.ParameterType;
+import com.amazonaws.services.simplesystemsmanagement.model.PutParameterRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Finds the common VPC of the target region, with its CIDR, common subnets and the route table of the private one,
+ * and keeps them per region as they hardly ever change.
+ * <p>
+ * The topology expires after {@code TOPOLOGY_CACHE_TTL_MINUTES} and is invalidated when {@link DeployCommonVpc}
+ * changes the stack, when {@link DeployCommonVpcStatus} finds the stack changed after the topology was found, and when
+ * its route table is gone. With {@code TOPOLOGY_PARAMETER_PREFIX} set, it is also kept in the parameter store with the
+ * ID of its stack and the time it was found, so that a cold container skips the lookups. A region without the common
+ * VPC, or with only a part of it, is not cached.
+ *
+ * @apiNote The target side always uses the execution role, thus the region alone identifies the common VPC.
+ */
+@Singleton
+class CommonVpcTopology {
+    private static final Logger log = LoggerFactory.getLogger(CommonVpcTopology.class);
+    private static final String DEFAULT_REGION = System.getenv("AWS_REGION");
+    private static final String PARAMETER_PREFIX = System.getenv("TOPOLOGY_PARAMETER_PREFIX");
+    private static final String STACK_ID_TAG = "aws:cloudformation:stack-id";
+    private static final Duration TTL = Duration.ofMinutes(EnvConfig.getLong("TOPOLOGY_CACHE_TTL_MINUTES", 30));
+
+    private static final ExpiringCache<String, Topology> topologies = new ExpiringCache<>(
+            EnvConfig.getInt("TOPOLOGY_CACHE_SIZE", 16), TTL);
+
+    static {
+        Bootstrap.onRestore(topologies::invalidateAll);
+    }
+
+    private final AmazonEC2 targetEc2;
+    private final AWSSimpleSystemsManagement ssm;
+    private final ObjectMapper mapper;
+    private final String region;
+
+    @Inject
+    CommonVpcTopology(@Target AmazonEC2 targetEc2,
+                      @Nullable @Target String region,
+                      AWSSimpleSystemsManagement ssm,
+                      ObjectMapper mapper) {
+        this.targetEc2 = targetEc2;
+        this.ssm = ssm;
+        this.mapper = mapper;
+        this.region = region == null ? DEFAULT_REGION : region;
+    }
+
+    /**
+     * @return empty if the common VPC is not deployed in the region, or not completely yet, e.g. while the stack is
+     * creating its subnets.
+     */
+    Optional<Topology> find() {
+        var topology = topologies.getIfPresent(region);
+        if (topology == null) {
+            topology = load();
+            if (topology != null) {
+                topologies.put(region, topology);
+            }
+        }
+        return Optional.ofNullable(topology);
+    }
+
+    /**
+     * @throws PortalException if the common VPC is not deployed in the region.
+     */
+    Topology get() {
+        return find().orElseThrow(() -> new PortalException("Unable to find common VPC in " + region));
+    }
+
+    /**
+     * Invalidates the topology found before the stack last changed, or found from another stack, e.g. by another
+     * container while the stack was updating.
+     *
+     * @param changedAt the time of the last event of the stack.
+     */
+    void invalidateIfBefore(String stackId, Date changedAt) {
+        final var kept = Optional.ofNullable(topologies.getIfPresent(region)).orElseGet(this::readParameter);
+        if (kept != null && (kept.getFoundAt() < changedAt.getTime()
+                || kept.getStackId() != null && !kept.getStackId().equals(stackId))) {
+            log.info("Topology of {} predates the last change of stack {}, invalidate it.", region, stackId);
+            invalidate();
+        }
+    }
+
+    void invalidate() {
+        topologies.invalidate(region);
+        if (PARAMETER_PREFIX != null) {
+            try {
+                ssm.deleteParameter(new DeleteParameterRequest().withName(parameterName()));
+            } catch (ParameterNotFoundException e) {
+                log.debug("No topology of {} is kept", region);
+            }
+        }
+    }
+
+    private Topology load() {
+        final var kept = readParameter();
+        if (kept != null) {
+            return kept;
+        }
+
+        final var topology = describe();
+        if (topology != null && PARAMETER_PREFIX != null) {
+            try {
+                ssm.putParameter(new PutParameterRequest()
+                        .withName(parameterName())
+                        .withType(ParameterType.String)
+                        .withOverwrite(true)
+                        .withValue(mapper.writeValueAsString(topology.toMap())));
+            } catch (JsonProcessingException e) {
+                log.warn("Unable to keep topology of {}", region, e);
+            }
+        }
+        return topology;
+    }
+
+    /**
+     * @return the topology kept in the parameter store, or {@code null} if there is none, it was found longer than
+     * the time to live ago, or it is kept without the time it was found by an earlier version. The topology described
+     * instead then overwrites it.
+     */
+    private Topology readParameter() {
+        if (PARAMETER_PREFIX == null) {
+            return null;
+        }
+
+        try {
+            final var value = ssm.getParameter(new GetParameterRequest().withName(parameterName()))
+                    .getParameter().getValue();
+            final var topology = Topology.of(mapper.readValue(value, new TypeReference<Map<String, String>>() {
+            }));
+            if (topology.getFoundAt() == 0) {
+                return null;
+            }
+            if (System.currentTimeMillis() - topology.getFoundAt() > TTL.toMillis()) {
+                log.debug("Topology of {} kept in the parameter store has expired", region);
+                return null;
+            }
+            return topology;
+        } catch (ParameterNotFoundException e) {
+            log.debug("No topology of {} is kept", region);
+        } catch (JsonProcessingException | NumberFormatException e) {
+            log.warn("Ignore malformed topology of {}", region, e);
+        }
+        return null;
+    }
+
+    private Topology describe() {
+        final var vpcs = targetEc2.describeVpcs(new DescribeVpcsRequest()
+                .withFilters(Filters.name(VpcConstants.COMMON_VPC))).getVpcs();
+        if (vpcs.isEmpty()) {
+            return null;
+        }
+
+        final var privateSubnets = targetEc2.describeSubnets(new DescribeSubnetsRequest()
+                .withFilters(Filters.name(VpcConstants.COMMON_PRIVATE_SUBNET1))).getSubnets();
+        final var publicSubnets = targetEc2.describeSubnets(new DescribeSubnetsRequest()
+                .withFilters(Filters.name(VpcConstants.COMMON_PUBLIC_SUBNET1))).getSubnets();
+        if (privateSubnets.isEmpty() || publicSubnets.isEmpty()) {
+            log.warn("Unable to find common subnet of {}, the stack may be creating it.", vpcs.get(0).getVpcId());
+            return null;
+        }
+
+        final var privateSubnetId = privateSubnets.get(0).getSubnetId();
+        final var routeTables = targetEc2.describeRouteTables(new DescribeRouteTablesRequest()
+                .withFilters(Filters.associatedSubnetId(privateSubnetId))).getRouteTables();
+        if (routeTables.isEmpty()) {
+            log.warn("Unable to find route table of {}, the stack may be creating it.", privateSubnetId);
+            return null;
+        }
+
+        return new Topology(
+                vpcs.get(0).getVpcId(),
+                vpcs.get(0).getCidrBlock(),
+                privateSubnetId,
+                publicSubnets.get(0).getSubnetId(),
+                routeTables.get(0).getRouteTableId(),
+                vpcs.get(0).getTags().stream()
+                        .filter(tag -> STACK_ID_TAG.equals(tag.getKey()))
+                        .map(Tag::getValue)
+                        .findFirst()
+                        .orElse(null),
+                System.currentTimeMillis());
+    }
+
+    private String parameterName() {
+        return PARAMETER_PREFIX + region;
+    }
+
+    static class Topology {
+        private final String vpcId;
+        private final String cidr;
+        private final String privateSubnetId;
+        private final String publicSubnetId;
+        private final String privateRouteTableId;
+        private final String stackId;
+        private final long foundAt;
+
+        Topology(String vpcId, String cidr, String privateSubnetId, String publicSubnetId,
+                 String privateRouteTableId, @Nullable String stackId, long foundAt) {
+            this.vpcId = vpcId;
+            this.cidr = cidr;
+            this.privateSubnetId = privateSubnetId;
+            this.publicSubnetId = publicSubnetId;
+            this.privateRouteTableId = privateRouteTableId;
+            this.stackId = stackId;
+            this.foundAt = foundAt;
+        }
+
+        static Topology of(Map<String, String> map) {
+            return new Topology(
+                    map.get("vpcId"),
+                    map.get("cidr"),
+                    map.get("privateSubnetId"),
+                    map.get("publicSubnetId"),
+                    map.get("privateRouteTableId"),
+                    map.get("stackId"),
+                    map.containsKey("foundAt") ? Long.parseLong(map.get("foundAt")) : 0);
+        }
+
+        Map<String, String> toMap() {
+            final var map = new HashMap<String, String>();
+            map.put("vpcId", vpcId);
+            map.put("cidr", cidr);
+            map.put("privateSubnetId", privateSubnetId);
+            map.put("publicSubnetId", publicSubnetId);
+            map.put("privateRouteTableId", privateRouteTableId);
+            map.put("stackId", stackId);
+            map.put("foundAt", String.valueOf(foundAt));
+            return map;
+        }
+
+        String getVpcId() {
+            return vpcId;
+        }
+
+        String getCidr() {
+            return cidr;
+        }
+
+        String getPrivateSubnetId() {
+            return privateSubnetId;
+        }
+
+        String getPublicSubnetId() {
+            return publicSubnetId;
+        }
+
+        String getPrivateRouteTableId() {
+            return privateRouteTableId;
+        }
+
+        /**
+         * @return the ID of the stack which created the VPC, or {@code null} if the VPC is not tagged with it.
+         */
+        String getStackId() {
+            return stackId;
+        }
+
+        /**
+         * @return the time the topology was found, in milliseconds since the epoch.
+         */
+        long getFoundAt() {
+            return foundAt;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.lambda.Bootstrap;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import aws.proserve.bcs.dr.secret.Credential;
+import com.amazonaws.AmazonServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the credentials resolved from the secrets for {@code CREDENTIAL_CACHE_TTL_MINUTES}, so that warm invocations
+ * do not read the project and the secret again.
+ * <p>
+ * Concurrent lookups of the same key share a single load. Within {@code CREDENTIAL_REFRESH_AHEAD_SECONDS} of the
+ * expiry, the cached credential is still returned while a reload runs in the background, so that the lookup rarely
+ * waits. A failed load is not cached.
+ *
+ * @apiNote A rotated secret is seen once its entry expires, or right away once a call of {@link #apply} is rejected
+ * with the credential of the old secret.
+ */
+final class CredentialCache {
+    private static final Logger log = LoggerFactory.getLogger(CredentialCache.class);
+    private static final long TTL_NANOS = TimeUnit.MINUTES.toNanos(
+            EnvConfig.getLong("CREDENTIAL_CACHE_TTL_MINUTES", 15));
+    private static final long REFRESH_AHEAD_NANOS = TimeUnit.SECONDS.toNanos(
+            EnvConfig.getLong("CREDENTIAL_REFRESH_AHEAD_SECONDS", 60));
+
+    /**
+     * The error codes of the services for an access key which is revoked, or a session token which is expired.
+     */
+    private static final Set<String> REJECTED = Set.of(
+            "AuthFailure", "ExpiredToken", "ExpiredTokenException", "InvalidClientTokenId",
+            "UnrecognizedClientException");
+
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private static final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable, "credential-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // credentials resolved before a snapshot may have been rotated by the time it is restored.
+        Bootstrap.onRestore(CredentialCache::invalidateAll);
+    }
+
+    private CredentialCache() {
+    }
+
+    static Credential get(String key, Supplier<Credential> loader) {
+        final var now = System.nanoTime();
+        final var load = new CompletableFuture<Credential>();
+        final var entry = entries.compute(key, (k, current) ->
+                current != null && (current.isLoading() || now - current.loadedAt < TTL_NANOS)
+                        ? current
+                        : new Entry(load, now));
+
+        final var hit = entry.credential != load;
+        if (!hit) {
+            try {
+                load.complete(loader.get());
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+            }
+        }
+
+        if (hit && !entry.isLoading() && now - entry.loadedAt > TTL_NANOS - REFRESH_AHEAD_NANOS) {
+            refresh(key, entry, loader);
+        }
+
+        ApiCallRecorder.count(hit ? "CredentialCacheHits" : "CredentialCacheMisses", 1);
+
+        try {
+            return entry.credential.join();
+        } catch (CompletionException e) {
+            entries.remove(key, entry);
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * @return the result of the call with the credential of the key. If AWS rejects the credential, e.g. once the
+     * secret is rotated, it is dropped so that the next lookup reads the secret again.
+     */
+    static <T> T apply(String key, Supplier<Credential> loader, Function<Credential, T> call) {
+        final var credential = get(key, loader);
+        try {
+            return call.apply(credential);
+        } catch (RuntimeException e) {
+            if (isRejected(e)) {
+                log.info("Credential of {} is rejected, drop it.", key);
+                invalidate(key);
+            }
+            throw e;
+        }
+    }
+
+    static void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    static void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * @return whether the exception, or one of its causes, is AWS rejecting the credential.
+     */
+    private static boolean isRejected(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AmazonServiceException
+                    && REJECTED.contains(((AmazonServiceException) cause).getErrorCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reloads the entry in the background once, replacing it only if it is still the current one.
+     */
+    private static void refresh(String key, Entry entry, Supplier<Credential> loader) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        refresher.execute(() -> {
+            try {
+                final var credential = loader.get();
+                entries.replace(key, entry,
+                        new Entry(CompletableFuture.completedFuture(credential), System.nanoTime()));
+                log.debug("Refreshed credential of {}", key);
+            } catch (RuntimeException e) {
+                entry.refreshing.set(false);
+                log.warn("Unable to refresh credential of {}, keep the current one", key, e);
+            }
+        });
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<Credential> credential;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(CompletableFuture<Credential> credential, long loadedAt) {
+            this.credential = credential;
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isLoading() {
+            return !credential.isDone();
+        }
+    }
+}
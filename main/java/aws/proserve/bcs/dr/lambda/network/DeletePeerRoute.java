@@ -5,6 +5,7 @@ package aws.proserve.bcs.dr.lambda.network;
 
 import aws.proserve.bcs.dr.lambda.annotation.Source;
 import aws.proserve.bcs.dr.lambda.annotation.Target;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
 import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.model.DeleteRouteRequest;
 import com.amazonaws.services.ec2.model.RouteTable;
@@ -12,15 +13,23 @@ import com.amazonaws.services.lambda.runtime.Context;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Map;
 
 public class DeletePeerRoute extends PeerRouteBase {
 
+    static {
+        VpcComponent.prime(VpcComponent::deletePeerRoute);
+    }
+
     @Override
-    public void handleRequest(PeerRouteBase.Request request, Context context) {
-        final var credential = VpcComponent.getCredentialByProject(request.getProjectId());
-        VpcComponent.build(request.getSourceRegion(), request.getTargetRegion(), credential)
-                .deletePeerRoute()
-                .handle(request);
+    public Map<String, Object> handleRequest(PeerRouteBase.Request request, Context context) {
+        try (var invocation = ApiCallRecorder.begin("DeletePeerRoute")) {
+            return VpcComponent.withCredentialByProject(request.getProjectId(), credential ->
+                    VpcComponent.build(request.getSourceRegion(), request.getTargetRegion(), credential)
+                            .deletePeerRoute()
+                            .handle(request)
+                            .toMap(request.isDryRun()));
+        }
     }
 
     @Singleton
@@ -28,23 +37,33 @@ public class DeletePeerRoute extends PeerRouteBase {
 
         @Inject
         Worker(@Source AmazonEC2 sourceEc2,
-               @Target AmazonEC2 targetEc2) {
-            super(sourceEc2, targetEc2, DeletePeerRoute.Worker::deleteRoute);
+               @Target AmazonEC2 targetEc2,
+               CommonVpcTopology commonVpcTopology,
+               PeeringResolver peeringResolver,
+               RouteExecutor routeExecutor) {
+            super(sourceEc2, targetEc2, commonVpcTopology, peeringResolver, routeExecutor,
+                    DeletePeerRoute.Worker::deleteRoute);
         }
 
-        private static void deleteRoute(AmazonEC2 ec2, RouteTable table, String cidr, String peerId) {
+        private static boolean deleteRoute(AmazonEC2 ec2, RouteTable table, String cidr, String peerId,
+                                           boolean dryRun) {
             final var tableId = table.getRouteTableId();
 
             log.info("Check table {} for peer ID {} with CIDR {}", tableId, peerId, cidr);
 
             if (table.getRoutes().stream()
-                    .anyMatch(r -> peerId.equals(r.getVpcPeeringConnectionId()))) {
+                    .noneMatch(r -> peerId.equals(r.getVpcPeeringConnectionId()))) {
+                return false;
+            }
+
+            if (!dryRun) {
                 log.info("Delete route to peer VPC on route table {}.", tableId);
 
                 ec2.deleteRoute(new DeleteRouteRequest()
                         .withRouteTableId(tableId)
                         .withDestinationCidrBlock(cidr));
             }
+            return true;
         }
     }
 }
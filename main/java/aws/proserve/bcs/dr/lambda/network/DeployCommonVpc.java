@@ -3,53 +3,75 @@
 
 package aws.proserve.bcs.dr.lambda.network;
 
-import aws.proserve.bcs.dr.lambda.VoidHandler;
+import aws.proserve.bcs.dr.lambda.MapHandler;
 import aws.proserve.bcs.dr.lambda.annotation.Target;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
 import aws.proserve.bcs.dr.lambda.util.StackUpdater;
-import aws.proserve.bcs.dr.s3.S3Constants;
 import aws.proserve.bcs.dr.vpc.VpcConstants;
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.Capability;
+import com.amazonaws.services.cloudformation.model.CreateStackRequest;
+import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.UpdateStackRequest;
 import com.amazonaws.services.lambda.runtime.Context;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.simplesystemsmanagement.AWSSimpleSystemsManagement;
-import com.amazonaws.services.simplesystemsmanagement.model.GetParametersRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.stream.Collectors;
-
-public class DeployCommonVpc implements VoidHandler<DeployCommonVpc.Request> {
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Deploys the common VPC stack and waits for it, or with {@code async} starts the deployment and returns right away.
+ * Follow an asynchronous deployment with {@link DeployCommonVpcStatus}.
+ */
+public class DeployCommonVpc implements MapHandler<DeployCommonVpc.Request> {
+
+    static {
+        VpcComponent.prime(VpcComponent::deployCommonVpc);
+    }
 
     @Override
-    public void handleRequest(Request request, Context context) {
-        final var credential = VpcComponent.getCredential(request.getSecretId());
-        VpcComponent.build(null, request.getRegion(), credential).deployCommonVpc().deploy(request);
+    public Map<String, Object> handleRequest(Request request, Context context) {
+        try (var invocation = ApiCallRecorder.begin("DeployCommonVpc")) {
+            return VpcComponent.withCredential(request.getSecretId(), credential -> {
+                final var worker = VpcComponent.build(null, request.getRegion(), credential).deployCommonVpc();
+                if (request.isAsync()) {
+                    return worker.start(request);
+                }
+
+                worker.deploy(request);
+                return worker.describe(request);
+            });
+        }
     }
 
     @Singleton
     static class Worker {
+        private static final String IN_PROGRESS = "_IN_PROGRESS";
+
         private final Logger log = LoggerFactory.getLogger(getClass());
-        private final AmazonS3 s3;
         private final AmazonCloudFormation cfn;
-        private final AWSSimpleSystemsManagement ssm;
-
+        private final CommonVpcTemplate template;
+        private final CommonVpcTopology commonVpcTopology;
 
         /**
          * @param cfn must use with {@code Target} here because {@link FindCommonSubnet} refers to this class with
          *            target region.
          */
         @Inject
-        Worker(AmazonS3 s3,
-               AWSSimpleSystemsManagement ssm,
-               @Target AmazonCloudFormation cfn) {
-            this.s3 = s3;
-            this.ssm = ssm;
+        Worker(@Target AmazonCloudFormation cfn,
+               CommonVpcTemplate template,
+               CommonVpcTopology commonVpcTopology) {
             this.cfn = cfn;
+            this.template = template;
+            this.commonVpcTopology = commonVpcTopology;
         }
 
         void deploy(Request request) {
@@ -59,20 +81,77 @@ public class DeployCommonVpc implements VoidHandler<DeployCommonVpc.Request> {
                 return;
             }
 
-            final var stream = s3.getObject(getBucket(ssm), S3Constants.COMMON_VPC_JSON).getObjectContent();
-            final var body = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))
-                    .lines().collect(Collectors.joining(System.lineSeparator()));
+            try {
+                updater.update(template.getBody());
+            } finally {
+                commonVpcTopology.invalidate();
+            }
+        }
+
+        /**
+         * Creates or updates the stack without waiting for it.
+         *
+         * @return the handle of the deployment, with {@code status} of the stack when it is started.
+         */
+        Map<String, Object> start(Request request) {
+            final var stack = findStack();
+            if (new StackUpdater(cfn, VpcConstants.COMMON_VPC_STACK_NAME).isValid()) {
+                log.info("Stack [{}] already exists at [{}]", VpcConstants.COMMON_VPC_STACK_NAME, request.getRegion());
+                return deployment(request, stack.orElse(null));
+            }
 
-            updater.update(body);
+            if (stack.isPresent() && stack.get().getStackStatus().endsWith(IN_PROGRESS)) {
+                log.info("Stack [{}] is {}, skip.", VpcConstants.COMMON_VPC_STACK_NAME, stack.get().getStackStatus());
+                return deployment(request, stack.get());
+            }
+
+            try {
+                if (stack.isEmpty()) {
+                    log.info("Create stack [{}] at [{}]", VpcConstants.COMMON_VPC_STACK_NAME, request.getRegion());
+                    cfn.createStack(new CreateStackRequest()
+                            .withStackName(VpcConstants.COMMON_VPC_STACK_NAME)
+                            .withTemplateBody(template.getBody())
+                            .withCapabilities(Capability.CAPABILITY_IAM));
+                } else if (StackStatus.ROLLBACK_COMPLETE.toString().equals(stack.get().getStackStatus())) {
+                    log.info("Delete stack [{}] which failed to create, start again once deleted.",
+                            VpcConstants.COMMON_VPC_STACK_NAME);
+                    cfn.deleteStack(new DeleteStackRequest().withStackName(VpcConstants.COMMON_VPC_STACK_NAME));
+                } else {
+                    log.info("Update stack [{}] at [{}]", VpcConstants.COMMON_VPC_STACK_NAME, request.getRegion());
+                    cfn.updateStack(new UpdateStackRequest()
+                            .withStackName(VpcConstants.COMMON_VPC_STACK_NAME)
+                            .withTemplateBody(template.getBody())
+                            .withCapabilities(Capability.CAPABILITY_IAM));
+                }
+            } finally {
+                commonVpcTopology.invalidate();
+            }
+            return deployment(request, findStack().orElse(null));
         }
 
-        private String getBucket(AWSSimpleSystemsManagement ssm) {
-            final var parameters = ssm.getParameters(new GetParametersRequest()
-                    .withNames(S3Constants.PARAM_BUCKET)).getParameters();
-            if (parameters.isEmpty()) {
-                throw new IllegalStateException("Unable to find bucket at " + S3Constants.PARAM_BUCKET);
+        Map<String, Object> describe(Request request) {
+            return deployment(request, findStack().orElse(null));
+        }
+
+        Optional<Stack> findStack() {
+            try {
+                return cfn.describeStacks(new DescribeStacksRequest()
+                        .withStackName(VpcConstants.COMMON_VPC_STACK_NAME)).getStacks().stream().findFirst();
+            } catch (AmazonCloudFormationException e) {
+                if (e.getErrorMessage() != null && e.getErrorMessage().contains("does not exist")) {
+                    return Optional.empty();
+                }
+                throw e;
             }
-            return parameters.get(0).getValue();
+        }
+
+        private static Map<String, Object> deployment(Request request, Stack stack) {
+            final var deployment = new LinkedHashMap<String, Object>();
+            deployment.put("region", request.getRegion());
+            deployment.put("stackName", VpcConstants.COMMON_VPC_STACK_NAME);
+            deployment.put("stackId", stack == null ? null : stack.getStackId());
+            deployment.put("status", stack == null ? null : stack.getStackStatus());
+            return deployment;
         }
     }
 
@@ -82,6 +161,7 @@ public class DeployCommonVpc implements VoidHandler<DeployCommonVpc.Request> {
     static class Request {
         private String region;
         private String secretId;
+        private boolean async;
 
         public String getRegion() {
             return region;
@@ -98,5 +178,13 @@ public class DeployCommonVpc implements VoidHandler<DeployCommonVpc.Request> {
         public void setSecretId(String secretId) {
             this.secretId = secretId;
         }
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
     }
 }
@@ -0,0 +1,168 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.lambda.MapHandler;
+import aws.proserve.bcs.dr.lambda.annotation.Target;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
+import aws.proserve.bcs.dr.vpc.VpcConstants;
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.amazonaws.services.lambda.runtime.Context;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Returns the status of the common VPC stack started by {@link DeployCommonVpc} with {@code async}, together with
+ * the stack events since the last call.
+ * <p>
+ * The result has the ID of the last returned event as {@code cursor}, pass it back in the next request to only read
+ * the events after it, without it the first page of the events is returned. Once the stack completes, the topology of the common
+ * VPC found before its last event is invalidated.
+ */
+public class DeployCommonVpcStatus implements MapHandler<DeployCommonVpcStatus.Request> {
+    private static final String IN_PROGRESS = "_IN_PROGRESS";
+    private static final String CURSOR = "cursor";
+
+    static {
+        VpcComponent.prime(VpcComponent::deployCommonVpcStatus);
+    }
+
+    @Override
+    public Map<String, Object> handleRequest(Request request, Context context) {
+        try (var invocation = ApiCallRecorder.begin("DeployCommonVpcStatus")) {
+            return VpcComponent.withCredential(request.getSecretId(), credential ->
+                    VpcComponent.build(null, request.getRegion(), credential)
+                            .deployCommonVpcStatus()
+                            .find(request));
+        }
+    }
+
+    @Singleton
+    static class Worker {
+        private final AmazonCloudFormation cfn;
+        private final DeployCommonVpc.Worker deployCommonVpc;
+        private final CommonVpcTopology commonVpcTopology;
+
+        @Inject
+        Worker(@Target AmazonCloudFormation cfn,
+               DeployCommonVpc.Worker deployCommonVpc,
+               CommonVpcTopology commonVpcTopology) {
+            this.cfn = cfn;
+            this.deployCommonVpc = deployCommonVpc;
+            this.commonVpcTopology = commonVpcTopology;
+        }
+
+        Map<String, Object> find(Request request) {
+            final var result = new LinkedHashMap<String, Object>();
+            result.put("region", request.getRegion());
+            result.put("stackName", VpcConstants.COMMON_VPC_STACK_NAME);
+
+            final var stack = deployCommonVpc.findStack();
+            if (stack.isEmpty()) {
+                result.put("status", null);
+                result.put("completed", false);
+                result.put("events", Collections.emptyList());
+                return result;
+            }
+
+            final var status = stack.get().getStackStatus();
+            result.put("stackId", stack.get().getStackId());
+            result.put("status", status);
+            result.put("completed", !status.endsWith(IN_PROGRESS));
+
+            final var cursor = request.getCursor();
+            final var events = tail(stack.get().getStackId(), cursor);
+            result.put("events", events);
+            if (!status.endsWith(IN_PROGRESS) && !events.isEmpty()) {
+                commonVpcTopology.invalidateIfBefore(stack.get().getStackId(),
+                        (Date) events.get(events.size() - 1).get("timestamp"));
+            }
+
+            final var nextCursor = events.isEmpty() ? cursor : (String) events.get(events.size() - 1).get("eventId");
+            result.put(CURSOR, nextCursor);
+            return result;
+        }
+
+        /**
+         * Reads the events newer than the cursor, which come newest first, up to the first page when there is no
+         * cursor.
+         *
+         * @return the events in the order they happened.
+         */
+        private List<Map<String, Object>> tail(String stackId, String cursor) {
+            final var events = new ArrayList<Map<String, Object>>();
+            final var describeRequest = new DescribeStackEventsRequest().withStackName(stackId);
+            DescribeStackEventsResult result;
+            do {
+                result = cfn.describeStackEvents(describeRequest);
+                describeRequest.setNextToken(result.getNextToken());
+
+                for (var event : result.getStackEvents()) {
+                    if (event.getEventId().equals(cursor)) {
+                        Collections.reverse(events);
+                        return events;
+                    }
+                    events.add(toMap(event));
+                }
+            } while (cursor != null && result.getNextToken() != null);
+
+            Collections.reverse(events);
+            return events;
+        }
+
+        private static Map<String, Object> toMap(StackEvent event) {
+            final var map = new LinkedHashMap<String, Object>();
+            map.put("eventId", event.getEventId());
+            map.put("timestamp", event.getTimestamp());
+            map.put("logicalResourceId", event.getLogicalResourceId());
+            map.put("resourceType", event.getResourceType());
+            map.put("resourceStatus", event.getResourceStatus());
+            map.put("resourceStatusReason", event.getResourceStatusReason());
+            return map;
+        }
+    }
+
+    static class Request {
+        private String region;
+        private String secretId;
+        private String cursor;
+
+        public String getRegion() {
+            return region;
+        }
+
+        public void setRegion(String region) {
+            this.region = region;
+        }
+
+        public String getSecretId() {
+            return secretId;
+        }
+
+        public void setSecretId(String secretId) {
+            this.secretId = secretId;
+        }
+
+        /**
+         * @return the ID of the event to read after, the {@code cursor} of the previous result.
+         */
+        public String getCursor() {
+            return cursor;
+        }
+
+        public void setCursor(String cursor) {
+            this.cursor = cursor;
+        }
+    }
+}
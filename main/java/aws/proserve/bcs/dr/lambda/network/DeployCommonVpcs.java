@@ -0,0 +1,193 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.lambda.MapHandler;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
+import aws.proserve.bcs.dr.lambda.util.EmbeddedMetrics;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import com.amazonaws.services.lambda.runtime.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deploys the common VPC to many regions at once, for example to prepare all the regions of a drill ahead of it.
+ * <p>
+ * The regions are deployed on a pool of {@code DEPLOY_CONCURRENCY} threads, each with the component of its region
+ * shared with the other handlers. A failed region does not stop the others, the result has the status and time of
+ * each region.
+ * <p>
+ * The regions are waited for until {@code WAIT_MARGIN_MILLIS} before the invocation times out. The regions which are
+ * not done by then are reported as {@code UNFINISHED}, and those not started yet are not started at all, thus invoke
+ * again with them, or with {@code async} when there are more regions than threads.
+ */
+public class DeployCommonVpcs implements MapHandler<DeployCommonVpcs.Request> {
+    private static final Logger log = LoggerFactory.getLogger(DeployCommonVpcs.class);
+    private static final String SUCCEEDED = "SUCCEEDED";
+    private static final String FAILED = "FAILED";
+    private static final String UNFINISHED = "UNFINISHED";
+
+    /**
+     * The time kept from the remaining time of the invocation to report the regions.
+     */
+    private static final long WAIT_MARGIN_MILLIS = EnvConfig.getLong("WAIT_MARGIN_MILLIS", 10_000);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, EnvConfig.getInt("DEPLOY_CONCURRENCY", 4)), runnable -> {
+                final var thread = new Thread(runnable, "deploy-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    static {
+        VpcComponent.prime(VpcComponent::deployCommonVpc);
+    }
+
+    @Override
+    public Map<String, Object> handleRequest(Request request, Context context) {
+        try (var invocation = ApiCallRecorder.begin("DeployCommonVpcs")) {
+            if (request.getRegions() == null || request.getRegions().isEmpty()) {
+                throw new IllegalArgumentException("Regions must not be empty");
+            }
+
+            final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+                    Math.max(0, context.getRemainingTimeInMillis() - WAIT_MARGIN_MILLIS));
+            final var regions = new ArrayList<>(new LinkedHashSet<>(request.getRegions()));
+
+            final var futures = new ArrayList<CompletableFuture<Map<String, Object>>>();
+            for (var region : regions) {
+                futures.add(CompletableFuture.supplyAsync(
+                        ApiCallRecorder.propagate(() -> deploy(request, region)), executor));
+            }
+
+            final var results = new LinkedHashMap<String, Object>();
+            var failures = 0;
+            var unfinished = 0;
+            for (int i = 0; i < regions.size(); i++) {
+                final var result = await(futures.get(i), regions.get(i), deadline);
+                failures += FAILED.equals(result.get("result")) ? 1 : 0;
+                unfinished += UNFINISHED.equals(result.get("result")) ? 1 : 0;
+                results.put(regions.get(i), result);
+            }
+
+            EmbeddedMetrics.of("Operation", "DeployCommonVpcs")
+                    .count("DeployedRegions", regions.size() - failures - unfinished)
+                    .count("FailedRegions", failures)
+                    .count("UnfinishedRegions", unfinished)
+                    .emit();
+            return Map.of(
+                    "succeeded", failures == 0 && unfinished == 0,
+                    "regions", results);
+        }
+    }
+
+    /**
+     * @return the result of the region, or {@code UNFINISHED} if it is not done before the deadline, in which case
+     * it is cancelled unless it is started already.
+     */
+    private static Map<String, Object> await(CompletableFuture<Map<String, Object>> future, String region,
+                                             long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            log.warn("Deployment of common VPC to [{}] is unfinished before the invocation times out", region);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+        } catch (ExecutionException e) {
+            // deploy catches the exceptions of a region, thus only an error gets here.
+            throw new IllegalStateException("Unable to deploy common VPC to " + region, e.getCause());
+        }
+
+        final var result = new LinkedHashMap<String, Object>();
+        result.put("region", region);
+        result.put("result", UNFINISHED);
+        return result;
+    }
+
+    /**
+     * @apiNote The credential is looked up by each region, sharing one load, so that a credential which AWS rejects
+     * is dropped from the cache as in the other handlers.
+     */
+    private static Map<String, Object> deploy(Request request, String region) {
+        final var start = System.nanoTime();
+        final var result = new LinkedHashMap<String, Object>();
+        try {
+            final var deployRequest = new DeployCommonVpc.Request();
+            deployRequest.setRegion(region);
+            deployRequest.setSecretId(request.getSecretId());
+            deployRequest.setAsync(request.isAsync());
+
+            result.putAll(VpcComponent.withCredential(request.getSecretId(), credential -> {
+                final var worker = VpcComponent.build(null, region, credential).deployCommonVpc();
+                if (request.isAsync()) {
+                    return worker.start(deployRequest);
+                }
+
+                worker.deploy(deployRequest);
+                return worker.describe(deployRequest);
+            }));
+            result.put("result", SUCCEEDED);
+        } catch (RuntimeException e) {
+            log.warn("Unable to deploy common VPC to [{}]", region, e);
+            result.put("region", region);
+            result.put("result", FAILED);
+            result.put("cause", e.getMessage());
+        }
+
+        result.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    static class Request {
+        private List<String> regions;
+        private String secretId;
+        private boolean async;
+
+        /**
+         * @return the regions to deploy to, at least one.
+         */
+        public List<String> getRegions() {
+            return regions;
+        }
+
+        public void setRegions(List<String> regions) {
+            this.regions = regions;
+        }
+
+        public String getSecretId() {
+            return secretId;
+        }
+
+        public void setSecretId(String secretId) {
+            this.secretId = secretId;
+        }
+
+        /**
+         * @return whether to only start the deployment of each region, see {@link DeployCommonVpc}.
+         */
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+    }
+}
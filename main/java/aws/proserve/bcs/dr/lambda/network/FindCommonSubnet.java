@@ -3,14 +3,8 @@
 
 package aws.proserve.bcs.dr.lambda.network;
 
-import aws.proserve.bcs.dr.exception.PortalException;
 import aws.proserve.bcs.dr.lambda.StringHandler;
-import aws.proserve.bcs.dr.lambda.annotation.Target;
-import aws.proserve.bcs.dr.vpc.Filters;
-import aws.proserve.bcs.dr.vpc.VpcConstants;
-import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
-import com.amazonaws.services.ec2.model.DescribeVpcsRequest;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
 import com.amazonaws.services.lambda.runtime.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,10 +14,16 @@ import javax.inject.Singleton;
 
 public class FindCommonSubnet implements StringHandler<FindCommonSubnet.Request> {
 
+    static {
+        VpcComponent.prime(VpcComponent::findCommonSubnet);
+    }
+
     @Override
     public String handleRequest(Request request, Context context) {
-        return VpcComponent.build(null, request.getTargetRegion(), null)
-                .findCommonSubnet().find(request);
+        try (var invocation = ApiCallRecorder.begin("FindCommonSubnet")) {
+            return VpcComponent.build(null, request.getTargetRegion(), null)
+                    .findCommonSubnet().find(request);
+        }
     }
 
     /**
@@ -33,20 +33,18 @@ public class FindCommonSubnet implements StringHandler<FindCommonSubnet.Request>
     static class Worker {
         private final Logger log = LoggerFactory.getLogger(getClass());
 
-        private final AmazonEC2 targetEc2;
+        private final CommonVpcTopology commonVpcTopology;
         private final DeployCommonVpc.Worker deployCommonVpc;
 
         @Inject
-        Worker(@Target AmazonEC2 targetEc2,
+        Worker(CommonVpcTopology commonVpcTopology,
                DeployCommonVpc.Worker deployCommonVpc) {
-            this.targetEc2 = targetEc2;
+            this.commonVpcTopology = commonVpcTopology;
             this.deployCommonVpc = deployCommonVpc;
         }
 
         String find(Request request) {
-            final var vpcs = targetEc2.describeVpcs(new DescribeVpcsRequest()
-                    .withFilters(Filters.name(VpcConstants.COMMON_VPC))).getVpcs();
-            if (vpcs.isEmpty()) {
+            if (commonVpcTopology.find().isEmpty()) {
                 log.info("Unable to find common VPC in [{}]", request.getTargetRegion());
 
                 final var deployRequest = new DeployCommonVpc.Request();
@@ -55,14 +53,8 @@ public class FindCommonSubnet implements StringHandler<FindCommonSubnet.Request>
                 deployCommonVpc.deploy(deployRequest);
             }
 
-            final var subnetName = request.isPublicNetwork() ? VpcConstants.COMMON_PUBLIC_SUBNET1 : VpcConstants.COMMON_PRIVATE_SUBNET1;
-            final var subnets = targetEc2.describeSubnets(new DescribeSubnetsRequest()
-                    .withFilters(Filters.name(subnetName))).getSubnets();
-            final var subnet = subnets.isEmpty() ? null : subnets.get(0);
-            if (subnet == null) {
-                throw new PortalException("Corrupted common VPC, unable to find common subnet.");
-            }
-            return subnet.getSubnetId();
+            final var topology = commonVpcTopology.get();
+            return request.isPublicNetwork() ? topology.getPublicSubnetId() : topology.getPrivateSubnetId();
         }
     }
 
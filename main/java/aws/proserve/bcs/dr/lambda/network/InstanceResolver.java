@@ -0,0 +1,77 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.exception.PortalException;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the VPC, subnet and security group of many instances with {@code DescribeInstances} filtered by instance ID,
+ * instead of walking all instances of the account for each of them.
+ */
+final class InstanceResolver {
+
+    /**
+     * The maximum number of values of a filter.
+     */
+    static final int MAX_FILTER_VALUES = 200;
+
+    private InstanceResolver() {
+    }
+
+    /**
+     * @return the source VPC of each instance, in the order of the given IDs.
+     * @throws PortalException listing all the instances not found.
+     */
+    static Map<String, PeerRouteBase.SourceVpc> resolve(AmazonEC2 ec2, Collection<String> instanceIds) {
+        final var ids = new ArrayList<>(new LinkedHashSet<>(instanceIds));
+        final var found = new LinkedHashMap<String, PeerRouteBase.SourceVpc>();
+        for (int from = 0; from < ids.size(); from += MAX_FILTER_VALUES) {
+            final var chunk = ids.subList(from, Math.min(from + MAX_FILTER_VALUES, ids.size()));
+            final var describeRequest = new DescribeInstancesRequest()
+                    .withFilters(new Filter("instance-id", chunk));
+            DescribeInstancesResult result;
+            do {
+                result = ec2.describeInstances(describeRequest);
+                describeRequest.setNextToken(result.getNextToken());
+
+                for (var reservation : result.getReservations()) {
+                    for (var instance : reservation.getInstances()) {
+                        final var groups = instance.getSecurityGroups();
+                        found.put(instance.getInstanceId(), new PeerRouteBase.SourceVpc(
+                                instance.getVpcId(),
+                                instance.getSubnetId(),
+                                groups == null || groups.isEmpty() ? null : groups.get(0).getGroupId()));
+                    }
+                }
+            } while (result.getNextToken() != null);
+        }
+
+        final List<String> missing = new ArrayList<>();
+        final var ordered = new LinkedHashMap<String, PeerRouteBase.SourceVpc>();
+        for (var id : ids) {
+            final var sourceVpc = found.get(id);
+            if (sourceVpc == null || sourceVpc.getSubnetId() == null) {
+                missing.add(id);
+            } else {
+                ordered.put(id, sourceVpc);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            throw new PortalException("Unable to find subnet of instances: " + String.join(", ", missing));
+        }
+        return ordered;
+    }
+}
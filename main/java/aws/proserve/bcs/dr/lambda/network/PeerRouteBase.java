@@ -4,58 +4,82 @@
 package aws.proserve.bcs.dr.lambda.network;
 
 import aws.proserve.bcs.dr.exception.PortalException;
-import aws.proserve.bcs.dr.lambda.VoidHandler;
+import aws.proserve.bcs.dr.lambda.MapHandler;
 import aws.proserve.bcs.dr.vpc.Filters;
-import aws.proserve.bcs.dr.vpc.VpcConstants;
 import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
-import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.AmazonEC2Exception;
 import com.amazonaws.services.ec2.model.DescribeRouteTablesRequest;
 import com.amazonaws.services.ec2.model.DescribeRouteTablesResult;
-import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
-import com.amazonaws.services.ec2.model.DescribeVpcPeeringConnectionsRequest;
 import com.amazonaws.services.ec2.model.DescribeVpcsRequest;
+import com.amazonaws.services.ec2.model.Filter;
 import com.amazonaws.services.ec2.model.RouteTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public abstract class PeerRouteBase implements VoidHandler<PeerRouteBase.Request> {
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+/**
+ * Returns the plan of route changes, with {@code dryRun} in the request to only compute it.
+ */
+public abstract class PeerRouteBase implements MapHandler<PeerRouteBase.Request> {
 
     static abstract class Worker {
         static final Logger log = LoggerFactory.getLogger(PeerRouteBase.class);
 
         private final AmazonEC2 sourceEc2;
         private final AmazonEC2 targetEc2;
+        private final CommonVpcTopology commonVpcTopology;
+        private final PeeringResolver peeringResolver;
+        private final RouteExecutor routeExecutor;
         private final ManageRoute manageRoute;
 
         protected Worker(
                 AmazonEC2 sourceEc2,
                 AmazonEC2 targetEc2,
+                CommonVpcTopology commonVpcTopology,
+                PeeringResolver peeringResolver,
+                RouteExecutor routeExecutor,
                 ManageRoute manageRoute) {
             this.sourceEc2 = sourceEc2;
             this.targetEc2 = targetEc2;
+            this.commonVpcTopology = commonVpcTopology;
+            this.peeringResolver = peeringResolver;
+            this.routeExecutor = routeExecutor;
             this.manageRoute = manageRoute;
         }
 
-        void handle(Request request) {
-            final var targetVpc = targetEc2.describeVpcs(new DescribeVpcsRequest()
-                    .withFilters(Filters.name(VpcConstants.COMMON_VPC))).getVpcs().get(0);
-
-            final var peerId = sourceEc2.describeVpcPeeringConnections(new DescribeVpcPeeringConnectionsRequest()
-                    .withFilters(
-                            Filters.accepterVpcId(targetVpc.getVpcId()),
-                            Filters.statusCode(PeerStatus.active.name())))
-                    .getVpcPeeringConnections().get(0).getVpcPeeringConnectionId();
-
-            final var peerSubnet = targetEc2.describeSubnets(new DescribeSubnetsRequest()
-                    .withFilters(Filters.name(VpcConstants.COMMON_PRIVATE_SUBNET1))).getSubnets().get(0);
-
-            final var targetRouteTable = targetEc2.describeRouteTables(new DescribeRouteTablesRequest()
-                    .withFilters(Filters.associatedSubnetId(peerSubnet.getSubnetId()))).getRouteTables().get(0);
+        /**
+         * @return the plan of route changes, which are applied unless the request is a dry run.
+         */
+        RoutePlan handle(Request request) {
+            var topology = commonVpcTopology.get();
+            RouteTable targetRouteTable;
+            try {
+                targetRouteTable = describeRouteTable(topology);
+            } catch (AmazonEC2Exception e) {
+                if (!"InvalidRouteTableID.NotFound".equals(e.getErrorCode())) {
+                    throw e;
+                }
+                log.info("Route table {} of common VPC is gone, find it again.", topology.getPrivateRouteTableId());
+                commonVpcTopology.invalidate();
+                topology = commonVpcTopology.get();
+                targetRouteTable = describeRouteTable(topology);
+            }
+            final var peerId = peeringResolver.getActive(request.getSourceVpcId(), topology.getVpcId())
+                    .getVpcPeeringConnectionId();
             final var sourceCidr = sourceEc2.describeVpcs(new DescribeVpcsRequest()
                     .withVpcIds(request.getSourceVpcId())).getVpcs().get(0).getCidrBlock();
-            manageRoute.manage(targetEc2, targetRouteTable, sourceCidr, peerId);
+
+            final var cidr = topology.getCidr();
+            final var plan = new RoutePlan(peerId);
+            plan.add(RoutePlan.TARGET, targetEc2, targetRouteTable, sourceCidr);
 
             if (request.getInstanceIds() == null) { // for deleting
                 final var describeRequest = new DescribeRouteTablesRequest();
@@ -65,53 +89,106 @@ public abstract class PeerRouteBase implements VoidHandler<PeerRouteBase.Request
                     describeRequest.setNextToken(result.getNextToken());
 
                     result.getRouteTables().forEach(table ->
-                            manageRoute.manage(sourceEc2, table, targetVpc.getCidrBlock(), peerId));
+                            plan.add(RoutePlan.SOURCE, sourceEc2, table, cidr));
                 } while (result.getNextToken() != null);
             } else { // for adding
-                for (String instanceId : request.getInstanceIds()) {
-                    final var sourceVpc = findSubnetId(sourceEc2, instanceId);
-                    final var tables = sourceEc2.describeRouteTables(new DescribeRouteTablesRequest()
-                            .withFilters(Filters.associatedSubnetId(sourceVpc.getSubnetId()))).getRouteTables();
-
-                    if (tables.isEmpty()) {
-                        log.info("Unable to find subnet association, add to main route table.");
-                        final var mainTable = sourceEc2.describeRouteTables(new DescribeRouteTablesRequest()
-                                .withFilters(Filters.associatedMain())).getRouteTables().get(0);
-
-                        manageRoute.manage(sourceEc2, mainTable, targetVpc.getCidrBlock(), peerId);
-                    } else {
-                        manageRoute.manage(sourceEc2, tables.get(0), targetVpc.getCidrBlock(), peerId);
-                    }
-                }
+                final var sourceVpcs = InstanceResolver.resolve(sourceEc2, Arrays.asList(request.getInstanceIds()));
+                findRouteTables(sourceVpcs.values()).forEach(table ->
+                        plan.add(RoutePlan.SOURCE, sourceEc2, table, cidr));
+            }
+
+            final var changes = plan.getChanges().stream()
+                    .filter(c -> manageRoute.manage(c.getEc2(), c.getTable(), c.getCidr(), peerId, true))
+                    .collect(Collectors.toList());
+            final var result = new RoutePlan(peerId);
+            changes.forEach(c -> result.add(c.getSide(), c.getEc2(), c.getTable(), c.getCidr()));
+
+            if (request.isDryRun()) {
+                log.info("Dry run, skip {} route changes", changes.size());
+            } else {
+                routeExecutor.execute(changes, c ->
+                        manageRoute.manage(c.getEc2(), c.getTable(), c.getCidr(), peerId, false));
+            }
+            return result;
+        }
+
+        /**
+         * @apiNote Describe the route table by the ID the topology keeps, which is gone if the stack replaced it.
+         */
+        private RouteTable describeRouteTable(CommonVpcTopology.Topology topology) {
+            return targetEc2.describeRouteTables(new DescribeRouteTablesRequest()
+                    .withRouteTableIds(topology.getPrivateRouteTableId())).getRouteTables().get(0);
+        }
+
+        /**
+         * @return the distinct route tables of the subnets, which is the main route table of the VPC for a subnet
+         * without explicit association.
+         */
+        private Collection<RouteTable> findRouteTables(Collection<SourceVpc> sourceVpcs) {
+            final var subnetVpcs = new LinkedHashMap<String, String>();
+            sourceVpcs.forEach(v -> subnetVpcs.put(v.getSubnetId(), v.getVpcId()));
+
+            final var subnetTables = new HashMap<String, RouteTable>();
+            describeRouteTables(new ArrayList<>(subnetVpcs.keySet()), "association.subnet-id", null).forEach(table ->
+                    table.getAssociations().stream()
+                            .filter(a -> subnetVpcs.containsKey(a.getSubnetId()))
+                            .forEach(a -> subnetTables.put(a.getSubnetId(), table)));
+
+            final var mainVpcIds = subnetVpcs.entrySet().stream()
+                    .filter(e -> !subnetTables.containsKey(e.getKey()))
+                    .map(Map.Entry::getValue)
+                    .distinct()
+                    .collect(Collectors.toList());
+            final var mainTables = new HashMap<String, RouteTable>();
+            if (!mainVpcIds.isEmpty()) {
+                log.info("Unable to find subnet association, add to main route table of {}.", mainVpcIds);
+                describeRouteTables(mainVpcIds, "vpc-id", Filters.associatedMain())
+                        .forEach(table -> mainTables.putIfAbsent(table.getVpcId(), table));
             }
+
+            final var tables = new LinkedHashMap<String, RouteTable>();
+            subnetVpcs.forEach((subnetId, vpcId) -> {
+                final var table = subnetTables.containsKey(subnetId)
+                        ? subnetTables.get(subnetId)
+                        : mainTables.get(vpcId);
+                if (table == null) {
+                    throw new PortalException("Unable to find route table of subnet " + subnetId);
+                }
+                tables.putIfAbsent(table.getRouteTableId(), table);
+            });
+            return tables.values();
         }
 
-        private SourceVpc findSubnetId(AmazonEC2 ec2, String instanceId) {
-            final var describeRequest = new DescribeInstancesRequest();
-            DescribeInstancesResult result;
-            do {
-                result = ec2.describeInstances(describeRequest);
-                describeRequest.setNextToken(result.getNextToken());
-
-                for (var reservation : result.getReservations()) {
-                    final var instance = reservation.getInstances().stream()
-                            .filter(i -> i.getInstanceId().equals(instanceId))
-                            .findFirst();
-
-                    if (instance.isPresent()) {
-                        return new SourceVpc(
-                                instance.get().getVpcId(),
-                                instance.get().getSubnetId(),
-                                instance.get().getSecurityGroups().get(0).getGroupId());
-                    }
+        /**
+         * Describes the route tables matching any of the values, in chunks of the maximum number of filter values.
+         */
+        private List<RouteTable> describeRouteTables(List<String> values, String filterName, Filter extraFilter) {
+            final var tables = new ArrayList<RouteTable>();
+            for (int from = 0; from < values.size(); from += InstanceResolver.MAX_FILTER_VALUES) {
+                final var describeRequest = new DescribeRouteTablesRequest().withFilters(new Filter(filterName,
+                        values.subList(from, Math.min(from + InstanceResolver.MAX_FILTER_VALUES, values.size()))));
+                if (extraFilter != null) {
+                    describeRequest.withFilters(extraFilter);
                 }
-            } while (result.getNextToken() != null);
-            throw new PortalException("Unable to find subnet of instance: " + instanceId);
+
+                DescribeRouteTablesResult result;
+                do {
+                    result = sourceEc2.describeRouteTables(describeRequest);
+                    describeRequest.setNextToken(result.getNextToken());
+                    tables.addAll(result.getRouteTables());
+                } while (result.getNextToken() != null);
+            }
+            return tables;
         }
     }
 
     interface ManageRoute {
-        void manage(AmazonEC2 ec2, RouteTable table, String cidr, String peerId);
+
+        /**
+         * @param dryRun only check the table without changing it.
+         * @return whether the table needs the change.
+         */
+        boolean manage(AmazonEC2 ec2, RouteTable table, String cidr, String peerId, boolean dryRun);
     }
 
     static class SourceVpc {
@@ -144,6 +221,7 @@ public abstract class PeerRouteBase implements VoidHandler<PeerRouteBase.Request
         private String targetRegion;
         private String[] instanceIds;
         private String projectId;
+        private boolean dryRun;
 
         public String getSourceVpcId() {
             return sourceVpcId;
@@ -184,5 +262,13 @@ public abstract class PeerRouteBase implements VoidHandler<PeerRouteBase.Request
         public void setProjectId(String projectId) {
             this.projectId = projectId;
         }
+
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        public void setDryRun(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
     }
 }
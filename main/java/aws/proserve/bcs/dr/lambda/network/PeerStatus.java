@@ -5,10 +5,44 @@ package aws.proserve.bcs.dr.lambda.network;
 
 import com.amazonaws.services.ec2.model.VpcPeeringConnectionStateReason;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 enum PeerStatus {
-    active;
+    initiatingRequest("initiating-request"),
+    pendingAcceptance("pending-acceptance"),
+    provisioning("provisioning"),
+    active("active"),
+    failed("failed"),
+    rejected("rejected"),
+    expired("expired"),
+    deleting("deleting"),
+    deleted("deleted");
+
+    /**
+     * The statuses a peering never leaves but to be deleted, it has to be requested again.
+     */
+    private static final Set<PeerStatus> ENDED = EnumSet.of(failed, rejected, expired, deleting, deleted);
+
+    private final String code;
+
+    PeerStatus(String code) {
+        this.code = code;
+    }
+
+    String getCode() {
+        return code;
+    }
+
+    boolean is(VpcPeeringConnectionStateReason status) {
+        return code.equals(status.getCode());
+    }
 
     static boolean isActive(VpcPeeringConnectionStateReason status) {
-        return active.name().equals(status.getCode());
+        return active.is(status);
+    }
+
+    static boolean hasEnded(VpcPeeringConnectionStateReason status) {
+        return ENDED.stream().anyMatch(s -> s.is(status));
     }
 }
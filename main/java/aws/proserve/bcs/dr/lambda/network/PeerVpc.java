@@ -4,24 +4,26 @@
 package aws.proserve.bcs.dr.lambda.network;
 
 import aws.proserve.bcs.dr.exception.PortalException;
-import aws.proserve.bcs.dr.lambda.VoidHandler;
+import aws.proserve.bcs.dr.lambda.Checkpoints;
+import aws.proserve.bcs.dr.lambda.MapHandler;
 import aws.proserve.bcs.dr.lambda.annotation.Source;
 import aws.proserve.bcs.dr.lambda.annotation.Target;
-import aws.proserve.bcs.dr.lambda.util.Assure;
-import aws.proserve.bcs.dr.util.Preconditions;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import aws.proserve.bcs.dr.lambda.util.Waiter;
 import aws.proserve.bcs.dr.vpc.Cidr;
-import aws.proserve.bcs.dr.vpc.Filters;
-import aws.proserve.bcs.dr.vpc.VpcConstants;
 import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.model.AcceptVpcPeeringConnectionRequest;
 import com.amazonaws.services.ec2.model.CreateVpcPeeringConnectionRequest;
 import com.amazonaws.services.ec2.model.DescribeVpcPeeringConnectionsRequest;
-import com.amazonaws.services.ec2.model.DescribeVpcPeeringConnectionsResult;
 import com.amazonaws.services.ec2.model.DescribeVpcsRequest;
+import com.amazonaws.services.ec2.model.Filter;
 import com.amazonaws.services.ec2.model.ModifyVpcPeeringConnectionOptionsRequest;
 import com.amazonaws.services.ec2.model.PeeringConnectionOptionsRequest;
 import com.amazonaws.services.ec2.model.VpcPeeringConnection;
+import com.amazonaws.services.ec2.model.VpcPeeringConnectionStateReason;
 import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -32,7 +34,12 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Tasks:
@@ -40,15 +47,44 @@ import java.util.Map;
  * <li>Request to peer source VPC to target common VPC</li>
  * <li>Accept the request on the common VPC side</li>
  * </ul>
+ * The progress is saved as a checkpoint per source VPC and target region, an invocation runs the steps which are
+ * ready and returns {@code PENDING} when the peering is not active before it runs out of time. Invoke again with the
+ * same request to resume from the last completed step, the state machine loops on the status as the README shows.
+ * <p>
+ * A peering which expires or is deleted before it is active is requested again from the start, one which fails or is
+ * rejected fails the invocation with the reason of EC2.
  */
-public class PeerVpc implements VoidHandler<PeerVpc.Request> {
+public class PeerVpc implements MapHandler<PeerVpc.Request> {
+    static final String COMPLETED = "COMPLETED";
+    static final String PENDING = "PENDING";
+
+    private static final String STEP = "step";
+    private static final String COMMON_VPC_ID = "commonVpcId";
+    private static final String PEER_ID = "vpcPeeringConnectionId";
+
+    /**
+     * The time kept from the remaining time of the invocation for the work after the waits.
+     */
+    private static final long WAIT_MARGIN_MILLIS = EnvConfig.getLong("WAIT_MARGIN_MILLIS", 10_000);
+
+    static {
+        VpcComponent.prime(VpcComponent::peerVpc);
+    }
+
+    static String checkpointName(String sourceVpcId, String targetRegion) {
+        return String.format("vpc-peering:%s:%s", sourceVpcId, targetRegion);
+    }
 
     @Override
-    public void handleRequest(Request request, Context context) {
-        final var credential = VpcComponent.getCredentialByProject(request.getSourceCredentialId());
-        VpcComponent.build(request.getSourceRegion(), request.getTargetRegion(), credential)
-                .peerVpc()
-                .handle(request);
+    public Map<String, Object> handleRequest(Request request, Context context) {
+        try (var invocation = ApiCallRecorder.begin("PeerVpc")) {
+            final var waiter = Waiter.within(Duration.ofMillis(
+                    Math.max(0, context.getRemainingTimeInMillis() - WAIT_MARGIN_MILLIS)));
+            return VpcComponent.withCredentialByProject(request.getSourceCredentialId(), credential ->
+                    VpcComponent.build(request.getSourceRegion(), request.getTargetRegion(), credential)
+                            .peerVpc()
+                            .handle(request, waiter));
+        }
     }
 
     @Singleton
@@ -59,38 +95,140 @@ public class PeerVpc implements VoidHandler<PeerVpc.Request> {
         private final AWSLambda lambda;
         private final AmazonEC2 sourceEc2;
         private final AmazonEC2 targetEc2;
+        private final CommonVpcTopology commonVpcTopology;
+        private final PeeringResolver peeringResolver;
+        private final Checkpoints checkpoints;
 
         @Inject
         Worker(ObjectMapper mapper,
                AWSLambda lambda,
                @Source AmazonEC2 sourceEc2,
-               @Target AmazonEC2 targetEc2) {
+               @Target AmazonEC2 targetEc2,
+               CommonVpcTopology commonVpcTopology,
+               PeeringResolver peeringResolver,
+               Checkpoints checkpoints) {
             this.mapper = mapper;
             this.lambda = lambda;
             this.sourceEc2 = sourceEc2;
             this.targetEc2 = targetEc2;
+            this.commonVpcTopology = commonVpcTopology;
+            this.peeringResolver = peeringResolver;
+            this.checkpoints = checkpoints;
         }
 
-        void handle(Request request) {
-            final var vpcs = targetEc2.describeVpcs(new DescribeVpcsRequest()
-                    .withFilters(Filters.name(VpcConstants.COMMON_VPC))).getVpcs();
-            if (vpcs.isEmpty()) {
+        /**
+         * Runs the steps not completed yet, saving each as it completes.
+         *
+         * @return {@code PENDING} if the peering is not active before the waiter runs out of time, otherwise
+         * {@code COMPLETED}.
+         */
+        Map<String, Object> handle(Request request, Waiter waiter) {
+            final var name = checkpointName(request.getSourceVpcId(), request.getTargetRegion());
+            var checkpoint = checkpoints.find(name);
+            if (Step.of(checkpoint) == Step.DNS_RESOLVED
+                    && peeringResolver.findActive(request.getSourceVpcId(), checkpoint.get(COMMON_VPC_ID)).isEmpty()) {
+                log.info("VPC peering {} is no longer active, start over.", checkpoint.get(PEER_ID));
+                checkpoints.delete(name);
+                checkpoint = checkpoints.find(name);
+            }
+
+            if (Step.of(checkpoint) == Step.NONE) {
+                final var discovered = discover(request, checkpoint, waiter);
+                if (discovered == null) {
+                    return status(PENDING, checkpoint);
+                }
+                checkpoint = discovered;
+            }
+
+            if (Step.of(checkpoint) == Step.DISCOVERED) {
+                checkpoint = requestPeering(request, checkpoint);
+            }
+
+            final var peerId = checkpoint.get(PEER_ID);
+            if (Step.of(checkpoint) == Step.REQUESTED) {
+                final var accepterStatus = new AtomicReference<VpcPeeringConnectionStateReason>();
+                if (!waiter.await("PeeringAcceptable", () -> describe(targetEc2, peerId)
+                        .map(c -> {
+                            accepterStatus.set(c.getStatus());
+                            return PeerStatus.pendingAcceptance.is(c.getStatus())
+                                    || PeerStatus.isActive(c.getStatus())
+                                    || PeerStatus.hasEnded(c.getStatus());
+                        })
+                        .orElse(false))) {
+                    return startOverIfEnded(name, checkpoint, findRequesterStatus(peerId));
+                }
+                if (PeerStatus.hasEnded(accepterStatus.get())) {
+                    return startOverIfEnded(name, checkpoint, accepterStatus.get());
+                }
+
+                if (PeerStatus.pendingAcceptance.is(accepterStatus.get())) {
+                    log.info("Accept VPC peering of {}", peerId);
+                    targetEc2.acceptVpcPeeringConnection(new AcceptVpcPeeringConnectionRequest()
+                            .withVpcPeeringConnectionId(peerId));
+                }
+                checkpoint = save(checkpoint, Step.ACCEPTED);
+            }
+
+            if (Step.of(checkpoint) == Step.ACCEPTED) {
+                final var requesterStatus = new AtomicReference<VpcPeeringConnectionStateReason>();
+                final var accepterStatus = new AtomicReference<VpcPeeringConnectionStateReason>();
+                if (!waiter.awaitAll(Map.of(
+                        "SourcePeeringActive", () -> isSettled(sourceEc2, peerId, requesterStatus),
+                        "TargetPeeringActive", () -> isSettled(targetEc2, peerId, accepterStatus)))) {
+                    return startOverIfEnded(name, checkpoint, findRequesterStatus(peerId));
+                }
+                for (var status : List.of(requesterStatus.get(), accepterStatus.get())) {
+                    if (PeerStatus.hasEnded(status)) {
+                        return startOverIfEnded(name, checkpoint, status);
+                    }
+                }
+                checkpoint = save(checkpoint, Step.ACTIVE);
+            }
+
+            if (Step.of(checkpoint) == Step.ACTIVE) {
+                sourceEc2.modifyVpcPeeringConnectionOptions(new ModifyVpcPeeringConnectionOptionsRequest()
+                        .withVpcPeeringConnectionId(peerId)
+                        .withRequesterPeeringConnectionOptions(new PeeringConnectionOptionsRequest()
+                                .withAllowDnsResolutionFromRemoteVpc(true)));
+
+                targetEc2.modifyVpcPeeringConnectionOptions(new ModifyVpcPeeringConnectionOptionsRequest()
+                        .withVpcPeeringConnectionId(peerId)
+                        .withAccepterPeeringConnectionOptions(new PeeringConnectionOptionsRequest()
+                                .withAllowDnsResolutionFromRemoteVpc(true)));
+                checkpoint = save(checkpoint, Step.DNS_RESOLVED);
+            }
+            return status(COMPLETED, checkpoint);
+        }
+
+        /**
+         * Finds the common VPC and checks that it does not overlap with the source VPC. An absent common VPC is
+         * deployed asynchronously, and waited for as long as the waiter allows.
+         *
+         * @return {@code null} if the common VPC is not deployed yet.
+         */
+        private Checkpoints.Checkpoint discover(Request request, Checkpoints.Checkpoint checkpoint, Waiter waiter) {
+            if (commonVpcTopology.find().isEmpty()) {
                 log.info("Unable to find common VPC in [{}]", request.getTargetRegion());
 
                 try {
                     lambda.invoke(new InvokeRequest()
                             .withFunctionName("DRPCommonDeployCommonVpc")
+                            .withInvocationType(InvocationType.Event)
                             .withPayload(mapper.writeValueAsString(Map.of(
                                     "region", request.getTargetRegion(),
-                                    "secretId", request.getSourceCredentialId()))));
+                                    "secretId", request.getSourceCredentialId(),
+                                    "async", true))));
                 } catch (IOException e) {
                     throw new UncheckedIOException("Unable to deploy common VPC", e);
                 }
+
+                if (!waiter.await("CommonVpcDeployed", () -> commonVpcTopology.find().isPresent())) {
+                    return null;
+                }
             }
 
-            final var commonVpc = targetEc2.describeVpcs(new DescribeVpcsRequest()
-                    .withFilters(Filters.name(VpcConstants.COMMON_VPC))).getVpcs().get(0);
-            final var commonCidr = new Cidr(commonVpc.getCidrBlock());
+            final var commonVpc = commonVpcTopology.get();
+            final var commonCidr = new Cidr(commonVpc.getCidr());
 
             final var sourceCidr = new Cidr(sourceEc2.describeVpcs(new DescribeVpcsRequest()
                     .withVpcIds(request.getSourceVpcId())).getVpcs().get(0).getCidrBlock());
@@ -99,66 +237,123 @@ public class PeerVpc implements VoidHandler<PeerVpc.Request> {
                         sourceCidr.getBlock(), commonCidr.getBlock()));
             }
 
-            final var peers = sourceEc2.describeVpcPeeringConnections(new DescribeVpcPeeringConnectionsRequest()
-                    .withFilters(
-                            Filters.statusCode(PeerStatus.active.name()),
-                            Filters.accepterVpcId(commonVpc.getVpcId()))).getVpcPeeringConnections();
-
-            if (!peers.isEmpty()) {
+            final var discovered = checkpoint.with(COMMON_VPC_ID, commonVpc.getVpcId());
+            final var active = peeringResolver.findActive(request.getSourceVpcId(), commonVpc.getVpcId());
+            if (active.isPresent()) {
                 log.info("VPC peering is already established.");
-                return;
+                return save(discovered.with(PEER_ID, active.get().getVpcPeeringConnectionId()), Step.DNS_RESOLVED);
+            }
+            return save(discovered, Step.DISCOVERED);
+        }
+
+        /**
+         * Adopts the peering between the VPCs which is still open, e.g. one requested by an invocation which failed
+         * before saving it, instead of requesting another one.
+         */
+        private Checkpoints.Checkpoint requestPeering(Request request, Checkpoints.Checkpoint checkpoint) {
+            final var commonVpcId = checkpoint.get(COMMON_VPC_ID);
+            final var open = peeringResolver.findOpen(request.getSourceVpcId(), commonVpcId);
+            if (open.isPresent()) {
+                log.info("Adopt VPC peering {} from {} to {}", open.get().getVpcPeeringConnectionId(),
+                        request.getSourceVpcId(), commonVpcId);
+                return save(checkpoint.with(PEER_ID, open.get().getVpcPeeringConnectionId()), Step.REQUESTED);
             }
 
-            log.info("Create VPC peering from {} to {}", request.getSourceVpcId(), commonVpc.getVpcId());
+            log.info("Create VPC peering from {} to {}", request.getSourceVpcId(), commonVpcId);
             final var peer = sourceEc2.createVpcPeeringConnection(new CreateVpcPeeringConnectionRequest()
                     .withVpcId(request.getSourceVpcId())
-                    .withPeerVpcId(commonVpc.getVpcId())
+                    .withPeerVpcId(commonVpcId)
                     .withPeerRegion(request.getTargetRegion())).getVpcPeeringConnection();
 
-            Assure.assure(() -> {
-                boolean found;
-                final var describeRequest = new DescribeVpcPeeringConnectionsRequest();
-                DescribeVpcPeeringConnectionsResult result;
-                do {
-                    result = targetEc2.describeVpcPeeringConnections(describeRequest);
-                    describeRequest.setNextToken(result.getNextToken());
-
-                    found = result.getVpcPeeringConnections().stream()
-                            .map(VpcPeeringConnection::getVpcPeeringConnectionId)
-                            .anyMatch(peer.getVpcPeeringConnectionId()::equals);
-                } while (!found && result.getNextToken() != null);
-                Preconditions.checkArgument(found, "VPC Peering is not established");
-            });
-
-            log.info("Accept VPC peering of {}", peer.getVpcPeeringConnectionId());
-            targetEc2.acceptVpcPeeringConnection(new AcceptVpcPeeringConnectionRequest()
-                    .withVpcPeeringConnectionId(peer.getVpcPeeringConnectionId()));
-
-            Assure.assure(() -> {
-                final var status = sourceEc2.describeVpcPeeringConnections(new DescribeVpcPeeringConnectionsRequest()
-                        .withVpcPeeringConnectionIds(peer.getVpcPeeringConnectionId()))
-                        .getVpcPeeringConnections().get(0).getStatus();
-                Preconditions.checkArgument(PeerStatus.isActive(status),
-                        "Source VPC peering status is not active yet: " + status);
-            });
-
-            Assure.assure(() -> {
-                final var status = targetEc2.describeVpcPeeringConnections(new DescribeVpcPeeringConnectionsRequest()
-                        .withVpcPeeringConnectionIds(peer.getVpcPeeringConnectionId()))
-                        .getVpcPeeringConnections().get(0).getStatus();
-                Preconditions.checkArgument(PeerStatus.isActive(status),
-                        "Target VPC peering status is not active yet: " + status);
-            });
-
-            sourceEc2.modifyVpcPeeringConnectionOptions(new ModifyVpcPeeringConnectionOptionsRequest()
-                    .withVpcPeeringConnectionId(peer.getVpcPeeringConnectionId())
-                    .withRequesterPeeringConnectionOptions(new PeeringConnectionOptionsRequest()
-                            .withAllowDnsResolutionFromRemoteVpc(true)));
-
-            targetEc2.modifyVpcPeeringConnectionOptions(new ModifyVpcPeeringConnectionOptionsRequest()
-                    .withVpcPeeringConnectionId(peer.getVpcPeeringConnectionId())
-                    .withAccepterPeeringConnectionOptions(new PeeringConnectionOptionsRequest()
-                            .withAllowDnsResolutionFromRemoteVpc(true)));
+            return save(checkpoint.with(PEER_ID, peer.getVpcPeeringConnectionId()), Step.REQUESTED);
+        }
+
+        /**
+         * Deletes the checkpoint of a peering which has ended, so that the next invocation requests it again. A
+         * peering which failed or was rejected would end the same way again, thus it fails the invocation instead.
+         *
+         * @param status the status of the peering, or {@code null} if it is unknown.
+         * @return {@code PENDING}, from the step the checkpoint is at.
+         * @throws PortalException if the peering failed or was rejected.
+         */
+        private Map<String, Object> startOverIfEnded(String name, Checkpoints.Checkpoint checkpoint,
+                                                     VpcPeeringConnectionStateReason status) {
+            if (status == null || !PeerStatus.hasEnded(status)) {
+                return status(PENDING, checkpoint);
+            }
+
+            log.info("VPC peering {} is {}, start over.", checkpoint.get(PEER_ID), status.getCode());
+            checkpoints.delete(name);
+            if (PeerStatus.failed.is(status) || PeerStatus.rejected.is(status)) {
+                throw new PortalException(String.format("VPC peering %s is %s: %s",
+                        checkpoint.get(PEER_ID), status.getCode(), status.getMessage()));
+            }
+            return status(PENDING, checkpoints.find(name));
+        }
+
+        /**
+         * @return the status of the peering on the source side, which knows it from the request on, as
+         * {@code deleted} once it is gone.
+         */
+        private VpcPeeringConnectionStateReason findRequesterStatus(String peerId) {
+            return describe(sourceEc2, peerId)
+                    .map(VpcPeeringConnection::getStatus)
+                    .orElseGet(() -> new VpcPeeringConnectionStateReason()
+                            .withCode(PeerStatus.deleted.getCode())
+                            .withMessage("Unable to find VPC peering " + peerId));
+        }
+
+        private Checkpoints.Checkpoint save(Checkpoints.Checkpoint checkpoint, Step step) {
+            log.info("VPC peering of {} reaches {}", checkpoint.getName(), step);
+            return checkpoints.save(checkpoint.with(STEP, step.name()));
+        }
+
+        /**
+         * @return whether the peering is active or has ended on the side of the client, keeping its status.
+         */
+        private static boolean isSettled(AmazonEC2 ec2, String peerId,
+                                         AtomicReference<VpcPeeringConnectionStateReason> status) {
+            return describe(ec2, peerId)
+                    .map(c -> {
+                        status.set(c.getStatus());
+                        return PeerStatus.isActive(c.getStatus()) || PeerStatus.hasEnded(c.getStatus());
+                    })
+                    .orElse(false);
+        }
+
+        /**
+         * @apiNote Filter by the ID instead of listing it, which fails before the peering reaches the other region.
+         */
+        private static Optional<VpcPeeringConnection> describe(AmazonEC2 ec2, String peerId) {
+            return ec2.describeVpcPeeringConnections(new DescribeVpcPeeringConnectionsRequest()
+                    .withFilters(new Filter("vpc-peering-connection-id", List.of(peerId))))
+                    .getVpcPeeringConnections().stream()
+                    .findFirst();
+        }
+
+        private static Map<String, Object> status(String status, Checkpoints.Checkpoint checkpoint) {
+            final var result = new LinkedHashMap<String, Object>();
+            result.put("status", status);
+            result.put("step", Step.of(checkpoint).name());
+            result.put("vpcPeeringConnectionId", checkpoint.get(PEER_ID));
+            return result;
+        }
+    }
+
+    /**
+     * The steps of peering, each saved once completed.
+     */
+    enum Step {
+        NONE,
+        DISCOVERED,
+        REQUESTED,
+        ACCEPTED,
+        ACTIVE,
+        DNS_RESOLVED;
+
+        static Step of(Checkpoints.Checkpoint checkpoint) {
+            final var step = checkpoint.get(STEP);
+            return step == null ? NONE : valueOf(step);
         }
     }
 
@@ -0,0 +1,82 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.exception.PortalException;
+import aws.proserve.bcs.dr.lambda.annotation.Source;
+import aws.proserve.bcs.dr.vpc.Filters;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeVpcPeeringConnectionsRequest;
+import com.amazonaws.services.ec2.model.DescribeVpcPeeringConnectionsResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.VpcPeeringConnection;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Finds the peerings from the source side to a common VPC, filtered by the VPCs and the status on the server side.
+ *
+ * @apiNote It is not cached across invocations, as a peering deleted by another container, e.g. by {@link UnpeerVpc},
+ * would leave a stale peering ID to route to.
+ */
+@Singleton
+class PeeringResolver {
+    private final AmazonEC2 sourceEc2;
+
+    @Inject
+    PeeringResolver(@Source AmazonEC2 sourceEc2) {
+        this.sourceEc2 = sourceEc2;
+    }
+
+    /**
+     * @return the active peering between the VPCs, not that of another source VPC to the same common VPC.
+     */
+    Optional<VpcPeeringConnection> findActive(String requesterVpcId, String accepterVpcId) {
+        return findFirst(new DescribeVpcPeeringConnectionsRequest()
+                .withFilters(
+                        new Filter("requester-vpc-info.vpc-id", List.of(requesterVpcId)),
+                        Filters.accepterVpcId(accepterVpcId),
+                        Filters.statusCode(PeerStatus.active.getCode())));
+    }
+
+    /**
+     * @return a peering between the VPCs which is requested and has not ended, e.g. one requested by an earlier
+     * invocation which failed before saving it.
+     */
+    Optional<VpcPeeringConnection> findOpen(String requesterVpcId, String accepterVpcId) {
+        return findFirst(new DescribeVpcPeeringConnectionsRequest()
+                .withFilters(
+                        new Filter("requester-vpc-info.vpc-id", List.of(requesterVpcId)),
+                        Filters.accepterVpcId(accepterVpcId),
+                        new Filter("status-code", List.of(
+                                PeerStatus.initiatingRequest.getCode(),
+                                PeerStatus.pendingAcceptance.getCode(),
+                                PeerStatus.provisioning.getCode(),
+                                PeerStatus.active.getCode()))));
+    }
+
+    /**
+     * @throws PortalException if there is no active peering between the VPCs.
+     */
+    VpcPeeringConnection getActive(String requesterVpcId, String accepterVpcId) {
+        return findActive(requesterVpcId, accepterVpcId).orElseThrow(() -> new PortalException(
+                String.format("Unable to find active VPC peering from %s to %s", requesterVpcId, accepterVpcId)));
+    }
+
+    private Optional<VpcPeeringConnection> findFirst(DescribeVpcPeeringConnectionsRequest describeRequest) {
+        DescribeVpcPeeringConnectionsResult result;
+        do {
+            result = sourceEc2.describeVpcPeeringConnections(describeRequest);
+            describeRequest.setNextToken(result.getNextToken());
+
+            if (!result.getVpcPeeringConnections().isEmpty()) {
+                return Optional.of(result.getVpcPeeringConnections().get(0));
+            }
+        } while (result.getNextToken() != null);
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,123 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.exception.PortalException;
+import aws.proserve.bcs.dr.lambda.CredentialKey;
+import aws.proserve.bcs.dr.lambda.annotation.Source;
+import aws.proserve.bcs.dr.lambda.annotation.Target;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
+import aws.proserve.bcs.dr.lambda.util.EmbeddedMetrics;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import aws.proserve.bcs.dr.lambda.util.RateLimiter;
+import aws.proserve.bcs.dr.secret.Credential;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Applies the route changes of a {@link RoutePlan} on a bounded pool, limiting the mutation rate per account and
+ * region, the scope of the EC2 request limits.
+ * <p>
+ * A throttled mutation is only retried by the SDK client, with its own backoff, as retrying it here too would multiply
+ * the attempts.
+ *
+ * @apiNote The pool and the rate limiters are shared by the components of the container, so that concurrent
+ * invocations with the same credential and region draw from the same budget.
+ */
+@Singleton
+class RouteExecutor {
+    private static final String DEFAULT_REGION = System.getenv("AWS_REGION");
+    private static final int CONCURRENCY = Math.max(1, EnvConfig.getInt("ROUTE_CONCURRENCY", 8));
+    private static final int PERMITS_PER_SECOND = Math.max(1, EnvConfig.getInt("ROUTE_MUTATIONS_PER_SECOND", 5));
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final Map<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY, RouteExecutor::newThread);
+
+    private final RateLimiter sourceLimiter;
+    private final RateLimiter targetLimiter;
+
+    /**
+     * @param credential of the source side, the target side uses the execution role of this function.
+     */
+    @Inject
+    RouteExecutor(@Nullable @Source String sourceRegion,
+                  @Nullable @Target String targetRegion,
+                  @Nullable Credential credential) {
+        this.sourceLimiter = limiter(sourceRegion, CredentialKey.of(credential));
+        this.targetLimiter = limiter(targetRegion, CredentialKey.of(null));
+    }
+
+    private static RateLimiter limiter(String region, CredentialKey credential) {
+        return limiters.computeIfAbsent((region == null ? DEFAULT_REGION : region) + "/" + credential,
+                k -> new RateLimiter(PERMITS_PER_SECOND));
+    }
+
+    /**
+     * Applies all the changes before returning, even if some of them fail.
+     *
+     * @throws PortalException listing the route tables failed to change.
+     */
+    void execute(List<RoutePlan.Change> changes, Consumer<RoutePlan.Change> mutation) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        final var start = System.nanoTime();
+        final var futures = new ArrayList<CompletableFuture<Void>>();
+        for (var change : changes) {
+            futures.add(CompletableFuture.runAsync(
+                    ApiCallRecorder.propagate(() -> apply(change, mutation)), executor));
+        }
+
+        final var failed = new ArrayList<String>();
+        Throwable cause = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).join();
+            } catch (RuntimeException e) {
+                failed.add(changes.get(i).getTable().getRouteTableId());
+                cause = cause == null ? e.getCause() : cause;
+            }
+        }
+
+        EmbeddedMetrics.of("Operation", "RouteMutation")
+                .count("RouteMutations", changes.size())
+                .count("RouteMutationFailures", failed.size())
+                .milliseconds("RouteMutationTime", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .emit();
+
+        if (!failed.isEmpty()) {
+            throw new PortalException("Unable to change route tables " + failed, cause);
+        }
+    }
+
+    private void apply(RoutePlan.Change change, Consumer<RoutePlan.Change> mutation) {
+        try {
+            (RoutePlan.TARGET.equals(change.getSide()) ? targetLimiter : sourceLimiter).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PortalException("Interrupted while changing route table", e);
+        }
+        mutation.accept(change);
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        final var thread = new Thread(runnable, "route-executor-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.RouteTable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The route changes of {@link PeerRouteBase}, computed up front so that each route table is changed at most once.
+ */
+class RoutePlan {
+    static final String SOURCE = "source";
+    static final String TARGET = "target";
+
+    private final String peerId;
+    private final Map<String, Change> changes = new LinkedHashMap<>();
+
+    RoutePlan(String peerId) {
+        this.peerId = peerId;
+    }
+
+    /**
+     * Adds a change of the table unless the same table is already planned.
+     */
+    void add(String side, AmazonEC2 ec2, RouteTable table, String cidr) {
+        changes.putIfAbsent(table.getRouteTableId(), new Change(side, ec2, table, cidr));
+    }
+
+    String getPeerId() {
+        return peerId;
+    }
+
+    List<Change> getChanges() {
+        return Collections.unmodifiableList(new ArrayList<>(changes.values()));
+    }
+
+    Map<String, Object> toMap(boolean dryRun) {
+        return Map.of(
+                "dryRun", dryRun,
+                "vpcPeeringConnectionId", peerId,
+                "changes", changes.values().stream()
+                        .map(Change::toMap)
+                        .collect(Collectors.toList()));
+    }
+
+    static class Change {
+        private final String side;
+        private final AmazonEC2 ec2;
+        private final RouteTable table;
+        private final String cidr;
+
+        Change(String side, AmazonEC2 ec2, RouteTable table, String cidr) {
+            this.side = side;
+            this.ec2 = ec2;
+            this.table = table;
+            this.cidr = cidr;
+        }
+
+        String getSide() {
+            return side;
+        }
+
+        AmazonEC2 getEc2() {
+            return ec2;
+        }
+
+        RouteTable getTable() {
+            return table;
+        }
+
+        String getCidr() {
+            return cidr;
+        }
+
+        Map<String, Object> toMap() {
+            return Map.of(
+                    "side", side,
+                    "routeTableId", table.getRouteTableId(),
+                    "destinationCidrBlock", cidr);
+        }
+    }
+}
@@ -3,33 +3,35 @@
 
 package aws.proserve.bcs.dr.lambda.network;
 
+import aws.proserve.bcs.dr.lambda.Checkpoints;
 import aws.proserve.bcs.dr.lambda.VoidHandler;
 import aws.proserve.bcs.dr.lambda.annotation.Source;
-import aws.proserve.bcs.dr.lambda.annotation.Target;
-import aws.proserve.bcs.dr.vpc.Filters;
-import aws.proserve.bcs.dr.vpc.VpcConstants;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
 import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.model.DeleteVpcPeeringConnectionRequest;
-import com.amazonaws.services.ec2.model.DescribeVpcPeeringConnectionsRequest;
-import com.amazonaws.services.ec2.model.DescribeVpcPeeringConnectionsResult;
-import com.amazonaws.services.ec2.model.DescribeVpcsRequest;
-import com.amazonaws.services.ec2.model.VpcPeeringConnection;
 import com.amazonaws.services.lambda.runtime.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.Optional;
 
 public class UnpeerVpc implements VoidHandler<UnpeerVpc.Request> {
 
+    static {
+        VpcComponent.prime(VpcComponent::unpeerVpc);
+    }
+
     @Override
     public void handleRequest(Request request, Context context) {
-        final var credential = VpcComponent.getCredentialByProject(request.getProjectId());
-        VpcComponent.build(request.getSourceRegion(), request.getTargetRegion(), credential)
-                .unpeerVpc()
-                .handle(request);
+        try (var invocation = ApiCallRecorder.begin("UnpeerVpc")) {
+            VpcComponent.withCredentialByProject(request.getProjectId(), credential -> {
+                VpcComponent.build(request.getSourceRegion(), request.getTargetRegion(), credential)
+                        .unpeerVpc()
+                        .handle(request);
+                return null;
+            });
+        }
     }
 
     @Singleton
@@ -37,36 +39,34 @@ public class UnpeerVpc implements VoidHandler<UnpeerVpc.Request> {
         private final Logger log = LoggerFactory.getLogger(getClass());
 
         private final AmazonEC2 sourceEc2;
-        private final AmazonEC2 targetEc2;
+        private final CommonVpcTopology commonVpcTopology;
+        private final PeeringResolver peeringResolver;
+        private final Checkpoints checkpoints;
 
         @Inject
         Worker(@Source AmazonEC2 sourceEc2,
-               @Target AmazonEC2 targetEc2) {
+               CommonVpcTopology commonVpcTopology,
+               PeeringResolver peeringResolver,
+               Checkpoints checkpoints) {
             this.sourceEc2 = sourceEc2;
-            this.targetEc2 = targetEc2;
+            this.commonVpcTopology = commonVpcTopology;
+            this.peeringResolver = peeringResolver;
+            this.checkpoints = checkpoints;
         }
 
         void handle(Request request) {
-            final var commonVpc = targetEc2.describeVpcs(new DescribeVpcsRequest()
-                    .withFilters(Filters.name(VpcConstants.COMMON_VPC))).getVpcs().get(0);
-
-            final var describePeerRequest = new DescribeVpcPeeringConnectionsRequest();
-            DescribeVpcPeeringConnectionsResult result;
-            Optional<VpcPeeringConnection> peer;
-            do {
-                result = sourceEc2.describeVpcPeeringConnections();
-                describePeerRequest.setNextToken(result.getNextToken());
-
-                peer = result.getVpcPeeringConnections().stream()
-                        .filter(c -> PeerStatus.isActive(c.getStatus()))
-                        .filter(c -> c.getAccepterVpcInfo().getVpcId().equals(commonVpc.getVpcId()))
-                        .findFirst();
-            } while (peer.isEmpty() && result.getNextToken() != null);
+            if (request.getSourceVpcId() == null) {
+                throw new IllegalArgumentException("Source VPC ID must be set");
+            }
 
+            final var commonVpc = commonVpcTopology.get();
+            final var peer = peeringResolver.findActive(request.getSourceVpcId(), commonVpc.getVpcId());
             if (peer.isPresent()) {
                 log.info("Active VPC peering exists, delete it.");
                 sourceEc2.deleteVpcPeeringConnection(new DeleteVpcPeeringConnectionRequest()
                         .withVpcPeeringConnectionId(peer.get().getVpcPeeringConnectionId()));
+
+                checkpoints.delete(PeerVpc.checkpointName(request.getSourceVpcId(), request.getTargetRegion()));
             }
         }
     }
@@ -74,6 +74,7 @@ public class UnpeerVpc implements VoidHandler<UnpeerVpc.Request> {
     static class Request {
         private String sourceRegion;
         private String targetRegion;
+        private String sourceVpcId;
         private String projectId;
 
         public String getSourceRegion() {
@@ -92,6 +93,14 @@ public class UnpeerVpc implements VoidHandler<UnpeerVpc.Request> {
             this.targetRegion = targetRegion;
         }
 
+        public String getSourceVpcId() {
+            return sourceVpcId;
+        }
+
+        public void setSourceVpcId(String sourceVpcId) {
+            this.sourceVpcId = sourceVpcId;
+        }
+
         public String getProjectId() {
             return projectId;
         }
@@ -3,22 +3,34 @@
 
 package aws.proserve.bcs.dr.lambda.network;
 
+import aws.proserve.bcs.dr.lambda.Bootstrap;
 import aws.proserve.bcs.dr.lambda.CommonModule;
+import aws.proserve.bcs.dr.lambda.ComponentClients;
 import aws.proserve.bcs.dr.lambda.annotation.Source;
 import aws.proserve.bcs.dr.lambda.annotation.Target;
 import aws.proserve.bcs.dr.secret.Credential;
 import aws.proserve.bcs.dr.secret.SecretManager;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dagger.BindsInstance;
 import dagger.Component;
 
 import javax.annotation.Nullable;
 import javax.inject.Singleton;
+import java.util.function.Function;
 
 @Singleton
 @Component(modules = CommonModule.class)
 public interface VpcComponent {
 
+    /**
+     * @return a component shared by warm invocations with the same regions and credential.
+     */
     static VpcComponent build(String sourceRegion, String targetRegion, Credential credential) {
+        return VpcComponentRegistry.get(sourceRegion, targetRegion, credential);
+    }
+
+    static VpcComponent create(String sourceRegion, String targetRegion, Credential credential) {
         return DaggerVpcComponent.builder()
                 .sourceRegion(sourceRegion)
                 .targetRegion(targetRegion)
@@ -26,24 +38,56 @@ public interface VpcComponent {
                 .build();
     }
 
-    static Credential getCredential(String secretId) {
-        return DaggerVpcComponent.builder()
-                .build()
+    /**
+     * Builds the component for credential lookup, which every handler of this package needs first, and the worker of
+     * the handler with its clients, during the class initialization of the handler.
+     * <p>
+     * The worker is built for the region of this function with its execution role, the clients of other regions and
+     * credentials reuse the service models and HTTP stack loaded on the way.
+     */
+    static void prime(Function<VpcComponent, ?> worker) {
+        final var component = build(null, null, null);
+        Bootstrap.prime(component.objectMapper(), component.dynamoDBMapper());
+        Bootstrap.prime(component::secretManager);
+
+        final var region = System.getenv("AWS_REGION");
+        if (region != null) {
+            Bootstrap.prime(() -> worker.apply(build(region, region, null)));
+        }
+    }
+
+    /**
+     * @return the result of the call with the credential of the secret, which is dropped from the cache if AWS
+     * rejects it.
+     */
+    static <T> T withCredential(String secretId, Function<Credential, T> call) {
+        return CredentialCache.apply("secret:" + secretId, () -> build(null, null, null)
                 .secretManager()
-                .getCredential(secretId);
+                .getCredential(secretId), call);
     }
 
-    static Credential getCredentialByProject(String projectId) {
-        return DaggerVpcComponent.builder()
-                .build()
+    /**
+     * @return the result of the call with the credential of the project, which is dropped from the cache if AWS
+     * rejects it.
+     */
+    static <T> T withCredentialByProject(String projectId, Function<Credential, T> call) {
+        return CredentialCache.apply("project:" + projectId, () -> build(null, null, null)
                 .secretManager()
-                .getCredentialByProject(projectId);
+                .getCredentialByProject(projectId), call);
     }
 
     SecretManager secretManager();
 
+    ObjectMapper objectMapper();
+
+    DynamoDBMapper dynamoDBMapper();
+
+    ComponentClients clients();
+
     DeployCommonVpc.Worker deployCommonVpc();
 
+    DeployCommonVpcStatus.Worker deployCommonVpcStatus();
+
     FindCommonSubnet.Worker findCommonSubnet();
 
     AddPeerRoute.Worker addPeerRoute();
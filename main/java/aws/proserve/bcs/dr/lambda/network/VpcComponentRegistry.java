@@ -0,0 +1,97 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.network;
+
+import aws.proserve.bcs.dr.lambda.Bootstrap;
+import aws.proserve.bcs.dr.lambda.CredentialKey;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import aws.proserve.bcs.dr.lambda.util.ExpiringCache;
+import aws.proserve.bcs.dr.secret.Credential;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link VpcComponent}s, together with their AWS clients and singleton workers, for warm invocations.
+ *
+ * @apiNote The time to live stays below one hour, the default duration of an assumed role session. A component
+ * which leaves the registry may still serve an invocation in flight, thus its clients are shut down only once the
+ * longest invocation of a function has passed.
+ */
+final class VpcComponentRegistry {
+    private static final Logger log = LoggerFactory.getLogger(VpcComponentRegistry.class);
+
+    private static final long CLOSE_DELAY_MINUTES = EnvConfig.getLong("COMPONENT_CLOSE_DELAY_MINUTES", 15);
+
+    private static final ScheduledExecutorService closer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final var thread = new Thread(runnable, "component-closer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ExpiringCache<Key, VpcComponent> components = new ExpiringCache<>(
+            EnvConfig.getInt("COMPONENT_CACHE_SIZE", 16),
+            Duration.ofMinutes(EnvConfig.getLong("COMPONENT_CACHE_TTL_MINUTES", 50)),
+            VpcComponentRegistry::close);
+
+    static {
+        Bootstrap.onRestore(() -> components.invalidateAll(key -> !key.credential.isDefault()));
+    }
+
+    private VpcComponentRegistry() {
+    }
+
+    static VpcComponent get(String sourceRegion, String targetRegion, Credential credential) {
+        final var key = new Key(sourceRegion, targetRegion, CredentialKey.of(credential));
+        return components.get(key, k -> {
+            log.debug("Build VPC component for {}", k);
+            return VpcComponent.create(sourceRegion, targetRegion, credential);
+        });
+    }
+
+    private static void close(VpcComponent component) {
+        closer.schedule(component.clients()::close, CLOSE_DELAY_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private static final class Key {
+        private final String sourceRegion;
+        private final String targetRegion;
+        private final CredentialKey credential;
+
+        Key(String sourceRegion, String targetRegion, CredentialKey credential) {
+            this.sourceRegion = sourceRegion;
+            this.targetRegion = targetRegion;
+            this.credential = credential;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final var that = (Key) o;
+            return Objects.equals(sourceRegion, that.sourceRegion)
+                    && Objects.equals(targetRegion, that.targetRegion)
+                    && credential.equals(that.credential);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sourceRegion, targetRegion, credential);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s -> %s, %s]", sourceRegion, targetRegion, credential);
+        }
+    }
+}
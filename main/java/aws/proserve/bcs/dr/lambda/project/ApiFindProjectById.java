@@ -4,10 +4,11 @@
 package aws.proserve.bcs.dr.lambda.project;
 
 import aws.proserve.bcs.dr.exception.ProjectNotFoundException;
-import aws.proserve.bcs.dr.lambda.ApiHandler;
+import aws.proserve.bcs.dr.lambda.ApiStreamHandler;
 import aws.proserve.bcs.dr.lambda.dto.ImmutableResponse;
+import aws.proserve.bcs.dr.lambda.dto.Response;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
 import aws.proserve.bcs.dr.project.Project;
-import aws.proserve.bcs.dr.project.ProjectFinder;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import org.slf4j.Logger;
@@ -15,40 +16,46 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.Map;
 
-public class ApiFindProjectById extends ApiHandler {
+/**
+ * Finds a project with all its items, streaming the response as the project may be large.
+ */
+public class ApiFindProjectById extends ApiStreamHandler {
+    private static final ProjectComponent projectComponent = ProjectComponent.build();
+
+    public ApiFindProjectById() {
+        super(projectComponent.objectMapper());
+    }
 
     @Override
-    public Map<String, Object> handleRequest(
-            APIGatewayProxyRequestEvent event, Context context) {
+    protected Response handle(APIGatewayProxyRequestEvent event, Context context) {
         final var id = event.getPathParameters().get("id");
-        try {
-            return output(ImmutableResponse.builder()
+        try (var invocation = ApiCallRecorder.begin("ApiFindProjectById")) {
+            return ImmutableResponse.builder()
                     .isSuccessful(true)
-                    .result(ProjectComponent.build().findProjectById().find(id))
-                    .build());
+                    .result(projectComponent.findProjectById().find(id))
+                    .build();
         } catch (ProjectNotFoundException e) {
-            return output(ImmutableResponse.builder()
+            return ImmutableResponse.builder()
                     .isSuccessful(false)
                     .cause("Unable to find project [" + id + "]")
-                    .build());
+                    .build();
         }
     }
 
     @Singleton
     static class Worker {
         private final Logger log = LoggerFactory.getLogger(getClass());
-        private final ProjectFinder finder;
+        private final ProjectCache cache;
 
         @Inject
-        Worker(ProjectFinder finder) {
-            this.finder = finder;
+        Worker(ProjectCache cache) {
+            this.cache = cache;
         }
 
         Project find(String id) {
             log.info("Find project [{}]", id);
-            return finder.findOne(id);
+            return cache.findOne(id);
         }
     }
 }
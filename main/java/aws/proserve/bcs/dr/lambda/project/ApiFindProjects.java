@@ -8,40 +8,121 @@ import aws.proserve.bcs.dr.lambda.dto.ImmutableResponse;
 import aws.proserve.bcs.dr.project.Project;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AmazonDynamoDBException;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Lists the summary of projects page by page.
+ * <p>
+ * Query parameters:
+ * <ul>
+ * <li>{@code limit}: the maximum number of projects to scan for this page.</li>
+ * <li>{@code nextToken}: the token returned by the previous page.</li>
+ * <li>{@code segment} and {@code totalSegments}: scan only one segment of the table, so that an export can fetch
+ * all segments in parallel.</li>
+ * </ul>
+ *
  * @deprecated Do not provide this api as it exposes too much information.
  */
 @Deprecated
 public class ApiFindProjects extends ApiHandler {
+    private static final ProjectComponent projectComponent = ProjectComponent.build();
 
     @Override
     public Map<String, Object> handleRequest(
             APIGatewayProxyRequestEvent event, Context context) {
-        return output(ImmutableResponse.builder()
-                .isSuccessful(true)
-                .result(ProjectComponent.build().findProjects().findAll())
-                .build());
+        final var parameters = event.getQueryStringParameters() == null
+                ? Map.<String, String>of()
+                : event.getQueryStringParameters();
+        try {
+            return output(ImmutableResponse.builder()
+                    .isSuccessful(true)
+                    .result(projectComponent.findProjects().findPage(
+                            parseInt(parameters.get("limit")),
+                            parameters.get("nextToken"),
+                            parseInt(parameters.get("segment")),
+                            parseInt(parameters.get("totalSegments"))))
+                    .build());
+        } catch (IllegalArgumentException e) {
+            log.warn("Unable to parse request", e);
+            return output(ImmutableResponse.builder()
+                    .isSuccessful(false)
+                    .cause(e.getLocalizedMessage())
+                    .build());
+        }
+    }
+
+    private static Integer parseInt(String value) {
+        return value == null || value.isBlank() ? null : Integer.valueOf(value.trim());
     }
 
     @Singleton
     static class Worker {
+        static final int DEFAULT_LIMIT = 50;
+        static final int MAX_LIMIT = 200;
+
+        /**
+         * Attributes listed for each project, the nested sub projects and their items are left out.
+         */
+        static final Map<String, String> SUMMARY_ATTRIBUTES = Map.of(
+                "#id", "id",
+                "#name", "name",
+                "#type", "type");
+
         private final DynamoDBMapper dbMapper;
+        private final ObjectMapper mapper;
 
         @Inject
-        Worker(DynamoDBMapper dbMapper) {
+        Worker(DynamoDBMapper dbMapper, ObjectMapper mapper) {
             this.dbMapper = dbMapper;
+            this.mapper = mapper;
         }
 
-        List<Project> findAll() {
-            return dbMapper.scan(Project.class, new DynamoDBScanExpression());
+        /**
+         * @return the page of project summaries, with {@code nextToken} when there are more.
+         * @throws IllegalArgumentException if the arguments are out of range, or DynamoDB rejects the start key of
+         *                                  {@code nextToken}, e.g. a forged or stale one.
+         */
+        Map<String, Object> findPage(Integer limit, String nextToken, Integer segment, Integer totalSegments) {
+            final var pageLimit = limit == null ? DEFAULT_LIMIT : limit;
+            if (pageLimit < 1 || pageLimit > MAX_LIMIT) {
+                throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+            }
+
+            final var expression = new DynamoDBScanExpression()
+                    .withLimit(pageLimit)
+                    .withExclusiveStartKey(PageToken.decode(mapper, nextToken))
+                    .withProjectionExpression(String.join(",", SUMMARY_ATTRIBUTES.keySet()))
+                    .withExpressionAttributeNames(SUMMARY_ATTRIBUTES);
+            if (segment != null || totalSegments != null) {
+                if (segment == null || totalSegments == null || segment < 0 || segment >= totalSegments) {
+                    throw new IllegalArgumentException("Segment must be between 0 and totalSegments - 1");
+                }
+                expression.withSegment(segment).withTotalSegments(totalSegments);
+            }
+
+            final ScanResultPage<Project> page;
+            try {
+                page = dbMapper.scanPage(Project.class, expression);
+            } catch (AmazonDynamoDBException e) {
+                if (nextToken != null && "ValidationException".equals(e.getErrorCode())) {
+                    throw new IllegalArgumentException("Invalid page token " + nextToken, e);
+                }
+                throw e;
+            }
+
+            final var result = new HashMap<String, Object>();
+            result.put("projects", page.getResults());
+            result.put("nextToken", PageToken.encode(mapper, page.getLastEvaluatedKey()));
+            return result;
         }
     }
 }
@@ -3,6 +3,7 @@
 
 package aws.proserve.bcs.dr.lambda.project;
 
+import aws.proserve.bcs.dr.exception.PortalException;
 import aws.proserve.bcs.dr.lambda.ApiHandler;
 import aws.proserve.bcs.dr.lambda.dto.ImmutableResponse;
 import aws.proserve.bcs.dr.project.Component;
@@ -12,6 +13,7 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import java.util.Map;
 
 public class ApiUpdateItemState extends ApiHandler {
+    private static final ProjectComponent projectComponent = ProjectComponent.build();
 
     @Override
     public Map<String, Object> handleRequest(
@@ -33,9 +35,10 @@ public class ApiUpdateItemState extends ApiHandler {
         final var map = event.getPathParameters();
         try {
             return output(UpdateStateWorker
-                    .getWorker(component, ProjectComponent.build().projectFinder())
+                    .getWorker(component, projectComponent.projectStore())
                     .update(map.get("id"), map.get("itemId"), state));
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | PortalException e) {
+            log.warn("Unable to update item state", e);
             return output(ImmutableResponse.builder()
                     .isSuccessful(false)
                     .cause(e.getLocalizedMessage())
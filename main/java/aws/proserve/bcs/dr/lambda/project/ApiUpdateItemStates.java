@@ -0,0 +1,45 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.exception.PortalException;
+import aws.proserve.bcs.dr.lambda.ApiHandler;
+import aws.proserve.bcs.dr.lambda.dto.ImmutableResponse;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+
+import java.util.Map;
+
+/**
+ * The body is {@code {"updates": [{"component": ..., "itemId": ..., "state": ...}, ...]}}.
+ */
+public class ApiUpdateItemStates extends ApiHandler {
+    private static final ProjectComponent projectComponent = ProjectComponent.build();
+
+    @Override
+    public Map<String, Object> handleRequest(
+            APIGatewayProxyRequestEvent event, Context context) {
+        final UpdateItemStates.Request request;
+        try {
+            request = mapper.readValue(event.getBody(), UpdateItemStates.Request.class);
+        } catch (Exception e) {
+            log.warn("Unable to parse request", e);
+            return output(ImmutableResponse.builder()
+                    .isSuccessful(false)
+                    .cause("Unable to parse request, need to provide updates of component, itemId and state")
+                    .build());
+        }
+
+        try {
+            return output(projectComponent.updateItemStates()
+                    .update(event.getPathParameters().get("id"), request.getUpdates()));
+        } catch (PortalException e) {
+            log.warn("Unable to update item states", e);
+            return output(ImmutableResponse.builder()
+                    .isSuccessful(false)
+                    .cause(e.getLocalizedMessage())
+                    .build());
+        }
+    }
+}
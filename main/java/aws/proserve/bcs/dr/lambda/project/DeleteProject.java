@@ -4,7 +4,7 @@
 package aws.proserve.bcs.dr.lambda.project;
 
 import aws.proserve.bcs.dr.lambda.VoidHandler;
-import aws.proserve.bcs.dr.project.ProjectFinder;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
 import com.amazonaws.services.lambda.runtime.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,27 +13,30 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 
 public class DeleteProject implements VoidHandler<String> {
+    private static final ProjectComponent projectComponent = ProjectComponent.build();
 
     @Override
     public void handleRequest(String projectId, Context context) {
-        ProjectComponent.build().deleteProject().delete(projectId);
+        try (var invocation = ApiCallRecorder.begin("DeleteProject")) {
+            projectComponent.deleteProject().delete(projectId);
+        }
     }
 
     @Singleton
     static class Worker {
         private final Logger log = LoggerFactory.getLogger(getClass());
-        private final ProjectFinder finder;
+        private final ProjectCache cache;
 
         @Inject
-        Worker(ProjectFinder finder) {
-            this.finder = finder;
+        Worker(ProjectCache cache) {
+            this.cache = cache;
         }
 
         void delete(String projectId) {
             log.info("Delete project [{}]", projectId);
-            final var project = finder.findOne(projectId);
+            final var project = cache.findOne(projectId);
             if (project != null) {
-                finder.delete(project);
+                cache.delete(project);
             }
         }
     }
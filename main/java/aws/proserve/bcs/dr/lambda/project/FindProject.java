@@ -14,10 +14,11 @@ import javax.inject.Singleton;
 import java.util.Map;
 
 public class FindProject implements MapHandler<String> {
+    private static final ProjectComponent projectComponent = ProjectComponent.build();
 
     @Override
     public Map<String, Object> handleRequest(String projectId, Context context) {
-        return ProjectComponent.build().findProject().find(projectId);
+        return projectComponent.findProject().find(projectId);
     }
 
     @Singleton
@@ -25,6 +26,10 @@ public class FindProject implements MapHandler<String> {
         private final Logger log = LoggerFactory.getLogger(getClass());
         private final ProjectFinder finder;
 
+        /**
+         * @apiNote Step Functions polls the project through it, which must see the writes of other containers at once,
+         * thus it is not cached.
+         */
         @Inject
         Worker(ProjectFinder finder) {
             this.finder = finder;
@@ -0,0 +1,92 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.exception.ProjectNotFoundException;
+import aws.proserve.bcs.dr.lambda.MapHandler;
+import aws.proserve.bcs.dr.project.Item;
+import aws.proserve.bcs.dr.project.ProjectFinder;
+import aws.proserve.bcs.dr.project.SubProject;
+import com.amazonaws.services.lambda.runtime.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the items of a project in total and per state, without reading the items, for polling the progress.
+ * <p>
+ * The output is {@code {"projectId": ..., "itemSize": ..., "components": {"VPC": {"total": 3, "REPLICATED": 2, ...}}}},
+ * where {@code itemSize} is the same as the one of {@link FindProject}.
+ * <p>
+ * The counts come from the summaries kept by {@link ProjectStore} for the sub projects of {@link SubProjectType}. A
+ * project without them is read and counted instead: one written before the summaries existed, or a CloudEndure one,
+ * whose items are not updated by state callbacks and thus never get a summary. CloudEndure projects always take this
+ * slower path, which reads every item.
+ */
+public class FindProjectSummary implements MapHandler<String> {
+    private static final ProjectComponent projectComponent = ProjectComponent.build();
+
+    @Override
+    public Map<String, Object> handleRequest(String projectId, Context context) {
+        return projectComponent.findProjectSummary().find(projectId);
+    }
+
+    @Singleton
+    static class Worker {
+        private final Logger log = LoggerFactory.getLogger(getClass());
+        private final ProjectStore store;
+        private final ProjectFinder finder;
+
+        @Inject
+        Worker(ProjectStore store, ProjectFinder finder) {
+            this.store = store;
+            this.finder = finder;
+        }
+
+        Map<String, Object> find(String projectId) {
+            log.info("Find summary of project [{}]", projectId);
+            final var summaries = store.findSummaries(projectId);
+            if (summaries == null) {
+                throw new ProjectNotFoundException("Unable to find project " + projectId);
+            }
+
+            final var components = new LinkedHashMap<String, Map<String, Long>>();
+            if (summaries.isEmpty()) {
+                // a CloudEndure project always ends up here, see the class comment.
+                log.info("Project [{}] has no summary yet, count its items", projectId);
+                final var project = finder.findOne(projectId);
+                if (project == null) {
+                    throw new ProjectNotFoundException("Unable to find project " + projectId);
+                }
+
+                count(components, "CloudEndure", project.getCloudEndureProject());
+                for (var type : SubProjectType.values()) {
+                    count(components, type.name(), type.getSubProject(project));
+                }
+            } else {
+                summaries.forEach((type, counts) -> components.put(type.name(), counts));
+            }
+
+            final long itemSize = components.values().stream()
+                    .findFirst()
+                    .map(counts -> counts.getOrDefault(ProjectStore.TOTAL, 0L))
+                    .orElse(0L);
+            return Map.of(
+                    "projectId", projectId,
+                    "itemSize", itemSize,
+                    "components", components);
+        }
+
+        private static void count(Map<String, Map<String, Long>> components, String name,
+                                  SubProject<? extends Item> subProject) {
+            if (subProject != null && subProject.getItems() != null) {
+                components.put(name, ProjectStore.summarize(subProject.getItems()));
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.project.Item;
+import aws.proserve.bcs.dr.project.Project;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The attributes of the items of a sub project, as the mapper of the project table stores them.
+ * <p>
+ * The names are found by converting a sample project, and the values by converting a sample item, so that the
+ * in-place writes of {@link ProjectStore} follow the mapping of the shared model instead of repeating it.
+ */
+final class ItemMapping {
+    private static final String ID_SAMPLE = "sample-id";
+    private static final String STATE_SAMPLE = "sample-state";
+
+    private final Class<? extends Item> itemClass;
+    private final DynamoDBMapperTableModel<Item> itemModel;
+    private final String subProject;
+    private final String items;
+    private final String id;
+    private final String state;
+
+    @SuppressWarnings("unchecked")
+    private ItemMapping(DynamoDBMapper dbMapper, SubProjectType type) {
+        this.itemClass = type.getItemClass();
+        this.itemModel = (DynamoDBMapperTableModel<Item>) dbMapper.getTableModel(itemClass);
+
+        final var item = newInstance(itemClass);
+        setProperty(item, "id", ID_SAMPLE);
+        item.setState(STATE_SAMPLE);
+        final var subProjectValue = newInstance(findProperty(Project.class, type.getAttribute()).getPropertyType());
+        setProperty(subProjectValue, "items", new ArrayList<>(List.of(item)));
+        final var project = new Project();
+        setProperty(project, type.getAttribute(), subProjectValue);
+
+        final var projectModel = dbMapper.getTableModel(Project.class);
+        final var sample = changed(projectModel.convert(new Project()), projectModel.convert(project));
+        if (sample.size() != 1) {
+            throw new IllegalStateException("Unable to find the attribute of " + type.getAttribute());
+        }
+        this.subProject = sample.keySet().iterator().next();
+
+        final var itemsSample = sample.get(subProject).getM().entrySet().stream()
+                .filter(e -> e.getValue().getL() != null && e.getValue().getL().size() == 1)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unable to find the items of " + subProject));
+        this.items = itemsSample.getKey();
+
+        final var itemSample = itemsSample.getValue().getL().get(0).getM();
+        this.id = nameOf(itemSample, ID_SAMPLE);
+        this.state = nameOf(itemSample, STATE_SAMPLE);
+    }
+
+    static Map<SubProjectType, ItemMapping> of(DynamoDBMapper dbMapper) {
+        final var mappings = new EnumMap<SubProjectType, ItemMapping>(SubProjectType.class);
+        for (var type : SubProjectType.values()) {
+            mappings.put(type, new ItemMapping(dbMapper, type));
+        }
+        return mappings;
+    }
+
+    /**
+     * @return the attribute of the sub project in the project table.
+     */
+    String getSubProject() {
+        return subProject;
+    }
+
+    /**
+     * @return the attribute of the item list in the sub project.
+     */
+    String getItems() {
+        return items;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getState() {
+        return state;
+    }
+
+    /**
+     * @return the attributes other than the state which a transition to the state sets on an item, e.g. its start or
+     * end time, converted by the mapper.
+     */
+    Map<String, AttributeValue> toAttributes(String checkedState, Date now) {
+        final var item = newInstance(itemClass);
+        final var before = itemModel.convert(item);
+        UpdateStateWorker.apply(item, checkedState, now);
+
+        final var attributes = changed(before, itemModel.convert(item));
+        attributes.remove(state);
+        return attributes;
+    }
+
+    /**
+     * @return the attributes of {@code after} which are absent from or different in {@code before}.
+     */
+    private static Map<String, AttributeValue> changed(Map<String, AttributeValue> before,
+                                                       Map<String, AttributeValue> after) {
+        final var changed = new HashMap<String, AttributeValue>();
+        after.forEach((name, value) -> {
+            if (!value.equals(before.get(name))) {
+                changed.put(name, value);
+            }
+        });
+        return changed;
+    }
+
+    private static String nameOf(Map<String, AttributeValue> attributes, String sample) {
+        return attributes.entrySet().stream()
+                .filter(e -> sample.equals(e.getValue().getS()))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unable to find the attribute of " + sample));
+    }
+
+    private static <T> T newInstance(Class<T> type) {
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create " + type.getName(), e);
+        }
+    }
+
+    private static PropertyDescriptor findProperty(Class<?> type, String property) {
+        try {
+            for (var descriptor : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+                if (descriptor.getName().equals(property) && descriptor.getWriteMethod() != null) {
+                    return descriptor;
+                }
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException("Unable to introspect " + type.getName(), e);
+        }
+        throw new IllegalStateException("Unable to find property " + property + " of " + type.getName());
+    }
+
+    private static void setProperty(Object bean, String property, Object value) {
+        try {
+            findProperty(bean.getClass(), property).getWriteMethod().invoke(bean, value);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Unable to set property " + property, e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts the last evaluated key of a scan to an opaque continuation token and back.
+ *
+ * @apiNote Only string and number keys are supported, which covers the key schema of the projects table.
+ */
+final class PageToken {
+    private static final TypeReference<Map<String, Map<String, String>>> TYPE = new TypeReference<>() {
+    };
+
+    private PageToken() {
+    }
+
+    static String encode(ObjectMapper mapper, Map<String, AttributeValue> key) {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+
+        final var map = new HashMap<String, Map<String, String>>();
+        key.forEach((name, value) -> map.put(name, value.getN() == null
+                ? Map.of("S", value.getS())
+                : Map.of("N", value.getN())));
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mapper.writeValueAsBytes(map));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to encode page token", e);
+        }
+    }
+
+    static Map<String, AttributeValue> decode(ObjectMapper mapper, String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+
+        final Map<String, Map<String, String>> map;
+        try {
+            map = mapper.readValue(Base64.getUrlDecoder().decode(token), TYPE);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token " + token, e);
+        }
+
+        final var key = new HashMap<String, AttributeValue>();
+        map.forEach((name, value) -> key.put(name, value.containsKey("N")
+                ? new AttributeValue().withN(value.get("N"))
+                : new AttributeValue(value.get("S"))));
+        return key;
+    }
+}
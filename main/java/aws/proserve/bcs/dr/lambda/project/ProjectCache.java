@@ -0,0 +1,68 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.lambda.Bootstrap;
+import aws.proserve.bcs.dr.lambda.util.ApiCallRecorder;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import aws.proserve.bcs.dr.lambda.util.ExpiringCache;
+import aws.proserve.bcs.dr.project.Project;
+import aws.proserve.bcs.dr.project.ProjectFinder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+
+/**
+ * Caches the projects read by {@link ProjectFinder} for a short while, so that the steps of a workflow running in the
+ * same container do not read the same project again and again.
+ * <p>
+ * Writes through this container invalidate the project, while writes from elsewhere are seen once the entry expires
+ * after {@code PROJECT_CACHE_TTL_SECONDS}. Projects which are not found are not cached. Thus the workflow polls read
+ * the projects with {@link ProjectFinder} directly instead.
+ * <p>
+ * The hits and misses are counted with the API calls of the invocation.
+ *
+ * @apiNote The cached project is shared, do not modify it.
+ */
+@Singleton
+class ProjectCache {
+    private final ProjectFinder finder;
+    private final ExpiringCache<String, Project> projects;
+
+    @Inject
+    ProjectCache(ProjectFinder finder) {
+        this.finder = finder;
+        this.projects = new ExpiringCache<>(
+                EnvConfig.getInt("PROJECT_CACHE_SIZE", 32),
+                Duration.ofSeconds(EnvConfig.getLong("PROJECT_CACHE_TTL_SECONDS", 10)));
+        Bootstrap.onRestore(projects::invalidateAll);
+    }
+
+    Project findOne(String projectId) {
+        var project = projects.getIfPresent(projectId);
+        final var hit = project != null;
+        if (!hit) {
+            project = finder.findOne(projectId);
+            if (project != null) {
+                projects.put(projectId, project);
+            }
+        }
+
+        ApiCallRecorder.count(hit ? "ProjectCacheHits" : "ProjectCacheMisses", 1);
+        return project;
+    }
+
+    void delete(Project project) {
+        try {
+            finder.delete(project);
+        } finally {
+            invalidate(project.getId());
+        }
+    }
+
+    void invalidate(String projectId) {
+        projects.invalidate(projectId);
+    }
+}
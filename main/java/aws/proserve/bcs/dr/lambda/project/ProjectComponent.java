@@ -3,8 +3,11 @@
 
 package aws.proserve.bcs.dr.lambda.project;
 
+import aws.proserve.bcs.dr.lambda.Bootstrap;
 import aws.proserve.bcs.dr.lambda.CommonModule;
 import aws.proserve.bcs.dr.project.ProjectFinder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dagger.Component;
 
 import javax.inject.Singleton;
@@ -13,17 +16,45 @@ import javax.inject.Singleton;
 @Component(modules = CommonModule.class)
 public interface ProjectComponent {
 
+    /**
+     * @return the component shared by all invocations of this container.
+     * @apiNote Its clients all use the execution role of the function, so it survives a snapshot restore, see
+     * {@link Bootstrap}. Priming the table model builds the DynamoDB client, the only one its handlers call.
+     */
     static ProjectComponent build() {
-        return DaggerProjectComponent.builder().build();
+        return Holder.INSTANCE;
     }
 
     DeleteProject.Worker deleteProject();
 
     FindProject.Worker findProject();
 
+    FindProjectSummary.Worker findProjectSummary();
+
     ApiFindProjectById.Worker findProjectById();
 
     ApiFindProjects.Worker findProjects();
 
+    UpdateItemStates.Worker updateItemStates();
+
     ProjectFinder projectFinder();
+
+    StateBuffer stateBuffer();
+
+    ProjectStore projectStore();
+
+    ObjectMapper objectMapper();
+
+    DynamoDBMapper dynamoDBMapper();
+
+    final class Holder {
+        private static final ProjectComponent INSTANCE = DaggerProjectComponent.builder().build();
+
+        static {
+            Bootstrap.prime(INSTANCE.objectMapper(), INSTANCE.dynamoDBMapper());
+        }
+
+        private Holder() {
+        }
+    }
 }
@@ -0,0 +1,353 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.exception.PortalException;
+import aws.proserve.bcs.dr.lambda.util.EmbeddedMetrics;
+import aws.proserve.bcs.dr.lambda.util.EnvConfig;
+import aws.proserve.bcs.dr.project.Item;
+import aws.proserve.bcs.dr.project.Project;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Reads and writes parts of a {@link Project} in place, instead of loading and saving the whole document.
+ * <p>
+ * The items of a sub project are located by an index attribute, a map from item ID to its position in the item list
+ * and its state. The index is only a hint: every write through it is conditioned on the item ID and state at that
+ * position. It is rebuilt by {@link #update}.
+ * <p>
+ * Each sub project also has a summary attribute counting its items in total and per state, which is rebuilt by
+ * {@link #update} and kept in line by {@link #updateItem}.
+ * <p>
+ * Every write bumps the revision attribute, and a write of the whole project is conditioned on the revision it read,
+ * so that concurrent writers never overwrite each other. All the writes of projects in this package go through here:
+ * {@link Project} comes from the shared library without a version attribute, so a save with the mapper could not be
+ * conditioned on the revision. The mapper only updates the attributes it models, see
+ * {@link aws.proserve.bcs.dr.lambda.CommonModule}, thus a save by another service leaves these attributes in place
+ * rather than dropping them, and the conditions on the item ID and state keep a stale index harmless.
+ */
+@Singleton
+class ProjectStore {
+    static final String STATE = "state";
+    static final String REVISION = "revision";
+    static final String POSITION = "position";
+    static final String TOTAL = "total";
+    static final String UNKNOWN_STATE = "UNKNOWN";
+
+    private static final long BASE_DELAY_MILLIS = 20;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final AmazonDynamoDB dynamoDB;
+    private final ProjectCache cache;
+    private final DynamoDBMapperTableModel<Project> tableModel;
+    private final Map<SubProjectType, ItemMapping> mappings;
+    private final String tableName;
+    private final String hashKey;
+    private final int maxAttempts;
+
+    @Inject
+    ProjectStore(AmazonDynamoDB dynamoDB, DynamoDBMapper dbMapper, ProjectCache cache) {
+        this.dynamoDB = dynamoDB;
+        this.cache = cache;
+        this.tableModel = dbMapper.getTableModel(Project.class);
+        this.mappings = ItemMapping.of(dbMapper);
+        this.tableName = dbMapper.generateCreateTableRequest(Project.class).getTableName();
+        this.hashKey = tableModel.hashKey().name();
+        this.maxAttempts = EnvConfig.getInt("PROJECT_WRITE_ATTEMPTS", 5);
+    }
+
+    /**
+     * Applies a change to the latest project and replaces it with a single write conditioned on its revision, together
+     * with the item indexes of its sub projects. A conflicting write re-reads the project and applies the change again,
+     * up to a bounded number of attempts.
+     *
+     * @param change applies the change to the project, and returns {@code false} to skip the write. It may be called
+     *               several times, each time with a freshly read project.
+     * @return {@code false} if the project does not exist.
+     * @throws PortalException if every attempt conflicts with another write.
+     */
+    boolean update(String projectId, Predicate<Project> change) {
+        var writes = 0;
+        var conflicts = 0;
+        try {
+            for (int attempt = 0; attempt < maxAttempts; attempt++) {
+                if (attempt > 0) {
+                    backoff(attempt);
+                }
+
+                final var item = dynamoDB.getItem(new GetItemRequest()
+                        .withTableName(tableName)
+                        .withKey(key(projectId))
+                        .withConsistentRead(true)).getItem();
+                if (item == null) {
+                    return false;
+                }
+
+                final var project = tableModel.unconvert(item);
+                if (!change.test(project)) {
+                    return true;
+                }
+
+                final var revision = item.get(REVISION);
+                if (put(project, revision == null ? null : Long.valueOf(revision.getN()))) {
+                    writes++;
+                    cache.invalidate(projectId);
+                    return true;
+                }
+
+                conflicts++;
+                log.info("Project [{}] is modified concurrently, retry #{}", projectId, conflicts);
+            }
+        } finally {
+            EmbeddedMetrics.of("Operation", "UpdateProject")
+                    .count("ProjectWrites", writes)
+                    .count("ProjectWriteConflicts", conflicts)
+                    .emit();
+        }
+
+        throw new PortalException(String.format("Unable to update project [%s] after %d concurrent writes",
+                projectId, conflicts));
+    }
+
+    private boolean put(Project project, Long revision) {
+        final var item = new HashMap<>(tableModel.convert(project));
+        item.put(REVISION, new AttributeValue().withN(String.valueOf(revision == null ? 1 : revision + 1)));
+        for (var type : SubProjectType.values()) {
+            final var subProject = type.getSubProject(project);
+            if (subProject != null && subProject.getItems() != null) {
+                item.put(type.getIndexAttribute(), toIndex(subProject.getItems()));
+                item.put(type.getSummaryAttribute(), toSummary(subProject.getItems()));
+            }
+        }
+
+        final var request = new PutItemRequest()
+                .withTableName(tableName)
+                .withItem(item);
+        if (revision == null) {
+            request.withConditionExpression("attribute_exists(#key) AND attribute_not_exists(#revision)")
+                    .withExpressionAttributeNames(Map.of("#key", hashKey, "#revision", REVISION));
+        } else {
+            request.withConditionExpression("#revision = :revision")
+                    .withExpressionAttributeNames(Map.of("#revision", REVISION))
+                    .withExpressionAttributeValues(Map.of(
+                            ":revision", new AttributeValue().withN(String.valueOf(revision))));
+        }
+
+        try {
+            dynamoDB.putItem(request);
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sleeps for a random time up to an exponentially growing cap, so that conflicting writers spread out.
+     */
+    private static void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(BASE_DELAY_MILLIS << Math.min(attempt, 6)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PortalException("Interrupted while updating project", e);
+        }
+    }
+
+    /**
+     * @return the position and state of the item, or {@code null} if either the project, the index or the item in the
+     * index does not exist.
+     */
+    ItemRef findItem(String projectId, SubProjectType type, String itemId) {
+        final var item = dynamoDB.getItem(new GetItemRequest()
+                .withTableName(tableName)
+                .withKey(key(projectId))
+                .withProjectionExpression("#index.#item")
+                .withExpressionAttributeNames(Map.of(
+                        "#index", type.getIndexAttribute(),
+                        "#item", itemId))
+                .withConsistentRead(true)).getItem();
+        if (item == null || !item.containsKey(type.getIndexAttribute())) {
+            return null;
+        }
+
+        final var entry = item.get(type.getIndexAttribute()).getM().get(itemId);
+        if (entry == null || entry.getM() == null || !entry.getM().containsKey(POSITION)) {
+            return null;
+        }
+
+        final var state = entry.getM().get(STATE);
+        return new ItemRef(Integer.parseInt(entry.getM().get(POSITION).getN()), state == null ? null : state.getS());
+    }
+
+    /**
+     * Sets the state of the item in place, with the other attributes the state sets such as its start or end time,
+     * keeps its index entry and the state counts of the sub project in line, and bumps the revision so that a
+     * concurrent {@link #update} of the whole project does not overwrite it.
+     *
+     * @return {@code false} if the item at the position is no longer the expected one, or has another state than the
+     * one in the index, or the sub project has no summary yet.
+     */
+    boolean updateItem(String projectId, SubProjectType type, String itemId, ItemRef ref, String state, Date now) {
+        final var mapping = mappings.get(type);
+        final var values = mapping.toAttributes(state, now);
+        final var path = "#sp.#items[" + ref.position + "]";
+        final var names = new HashMap<String, String>();
+        names.put("#sp", mapping.getSubProject());
+        names.put("#items", mapping.getItems());
+        names.put("#id", mapping.getId());
+        names.put("#state", mapping.getState());
+        names.put("#index", type.getIndexAttribute());
+        names.put("#item", itemId);
+        names.put("#revision", REVISION);
+        final var attributes = new HashMap<String, AttributeValue>();
+        attributes.put(":id", new AttributeValue(itemId));
+        attributes.put(":state", new AttributeValue(state));
+        attributes.put(":zero", new AttributeValue().withN("0"));
+        attributes.put(":one", new AttributeValue().withN("1"));
+
+        final var expression = new StringBuilder("SET #revision = if_not_exists(#revision, :zero) + :one, ")
+                .append(path).append(".#state = :state, #index.#item.#state = :state");
+        var i = 0;
+        for (var entry : values.entrySet()) {
+            names.put("#a" + i, entry.getKey());
+            attributes.put(":a" + i, entry.getValue());
+            expression.append(", ").append(path).append(".#a").append(i).append(" = :a").append(i);
+            i++;
+        }
+
+        final var condition = new StringBuilder(path).append(".#id = :id");
+        if (ref.state == null) {
+            condition.append(" AND attribute_not_exists(").append(path).append(".#state)");
+        } else {
+            attributes.put(":old", new AttributeValue(ref.state));
+            condition.append(" AND ").append(path).append(".#state = :old");
+        }
+
+        final var oldCount = ref.state == null ? UNKNOWN_STATE : ref.state;
+        if (!oldCount.equals(state)) {
+            names.put("#summary", type.getSummaryAttribute());
+            names.put("#new", state);
+            names.put("#old", oldCount);
+            attributes.put(":minusOne", new AttributeValue().withN("-1"));
+            expression.append(" ADD #summary.#new :one, #summary.#old :minusOne");
+            condition.append(" AND attribute_exists(#summary)");
+        }
+
+        try {
+            dynamoDB.updateItem(new UpdateItemRequest()
+                    .withTableName(tableName)
+                    .withKey(key(projectId))
+                    .withUpdateExpression(expression.toString())
+                    .withConditionExpression(condition.toString())
+                    .withExpressionAttributeNames(names)
+                    .withExpressionAttributeValues(attributes));
+            cache.invalidate(projectId);
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            log.info("Item [{}] of project [{}] no longer matches its index", itemId, projectId);
+            return false;
+        }
+    }
+
+    /**
+     * @return the state counts per sub project which has a summary, or {@code null} if the project does not exist.
+     */
+    Map<SubProjectType, Map<String, Long>> findSummaries(String projectId) {
+        final var names = new HashMap<String, String>();
+        names.put("#key", hashKey);
+        final var projection = new StringBuilder("#key");
+        for (var type : SubProjectType.values()) {
+            names.put("#" + type.name(), type.getSummaryAttribute());
+            projection.append(", #").append(type.name());
+        }
+
+        final var item = dynamoDB.getItem(new GetItemRequest()
+                .withTableName(tableName)
+                .withKey(key(projectId))
+                .withProjectionExpression(projection.toString())
+                .withExpressionAttributeNames(names)).getItem();
+        if (item == null || item.isEmpty()) {
+            return null;
+        }
+
+        final var summaries = new EnumMap<SubProjectType, Map<String, Long>>(SubProjectType.class);
+        for (var type : SubProjectType.values()) {
+            final var summary = item.get(type.getSummaryAttribute());
+            if (summary != null && summary.getM() != null) {
+                final var counts = new TreeMap<String, Long>();
+                summary.getM().forEach((state, count) -> counts.put(state, Long.valueOf(count.getN())));
+                summaries.put(type, counts);
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * @return the item index from the items in list order.
+     */
+    private static AttributeValue toIndex(List<? extends Item> items) {
+        final var index = new HashMap<String, AttributeValue>();
+        for (int i = 0; i < items.size(); i++) {
+            final var entry = new HashMap<String, AttributeValue>();
+            entry.put(POSITION, new AttributeValue().withN(String.valueOf(i)));
+            if (items.get(i).getState() != null) {
+                entry.put(STATE, new AttributeValue(items.get(i).getState()));
+            }
+            index.put(items.get(i).getId(), new AttributeValue().withM(entry));
+        }
+        return new AttributeValue().withM(index);
+    }
+
+    /**
+     * @return the number of items, in total and per state.
+     */
+    static Map<String, Long> summarize(List<? extends Item> items) {
+        final var counts = new TreeMap<String, Long>();
+        counts.put(TOTAL, (long) items.size());
+        for (var item : items) {
+            counts.merge(item.getState() == null ? UNKNOWN_STATE : item.getState(), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    private static AttributeValue toSummary(List<? extends Item> items) {
+        final var summary = new HashMap<String, AttributeValue>();
+        summarize(items).forEach((state, count) -> summary.put(state, new AttributeValue().withN(count.toString())));
+        return new AttributeValue().withM(summary);
+    }
+
+    private Map<String, AttributeValue> key(String projectId) {
+        return Map.of(hashKey, new AttributeValue(projectId));
+    }
+
+    static final class ItemRef {
+        private final int position;
+        private final String state;
+
+        ItemRef(int position, String state) {
+            this.position = position;
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.project.Item;
+import aws.proserve.bcs.dr.project.TimedItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Coalesces item state transitions per project, and writes each project once on {@link #flush()}.
+ * <p>
+ * Only the latest state of an item is kept, while its start and end times are those of the latest transition that
+ * sets them, which is the same as applying the transitions one by one in order.
+ *
+ * @apiNote The container may be frozen right after an invocation returns, thus always flush before returning.
+ */
+@Singleton
+class StateBuffer {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ProjectStore store;
+    private final Map<String, Map<ItemKey, Transition>> pending = new LinkedHashMap<>();
+
+    @Inject
+    StateBuffer(ProjectStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param checkedState a state already checked with {@link SubProjectType#checkState}.
+     * @param time         when the transition happened, transitions must be added in this order.
+     */
+    synchronized void add(String projectId, SubProjectType type, String itemId, String checkedState, Date time) {
+        pending.computeIfAbsent(projectId, k -> new LinkedHashMap<>())
+                .computeIfAbsent(new ItemKey(type, itemId), k -> new Transition())
+                .merge(checkedState, time);
+    }
+
+    /**
+     * Writes all pending transitions, one write per project, and empties the buffer.
+     *
+     * @return the IDs of projects which fail to be written.
+     */
+    synchronized Set<String> flush() {
+        final var failed = new HashSet<String>();
+        for (var entry : pending.entrySet()) {
+            final var projectId = entry.getKey();
+            final var transitions = entry.getValue();
+            log.info("Flush {} item states of project [{}]", transitions.size(), projectId);
+
+            try {
+                if (!store.update(projectId, project -> {
+                    final var items = new EnumMap<SubProjectType, Map<String, Item>>(SubProjectType.class);
+                    var applied = false;
+                    for (var transition : transitions.entrySet()) {
+                        final var key = transition.getKey();
+                        final var item = items.computeIfAbsent(key.type, type -> {
+                            final var subProject = type.getSubProject(project);
+                            return subProject == null || subProject.getItems() == null
+                                    ? Map.of()
+                                    : subProject.getItems().stream().collect(
+                                    Collectors.toMap(Item::getId, Function.identity(), (a, b) -> a));
+                        }).get(key.itemId);
+
+                        if (item == null) {
+                            log.warn("Unable to find item [{}] of project [{}], skip it", key.itemId, projectId);
+                        } else {
+                            transition.getValue().applyTo(item);
+                            applied = true;
+                        }
+                    }
+                    return applied;
+                })) {
+                    log.warn("Unable to find project [{}], drop its item states", projectId);
+                }
+            } catch (RuntimeException e) {
+                log.error("Unable to write item states of project [" + projectId + "]", e);
+                failed.add(projectId);
+            }
+        }
+
+        pending.clear();
+        return failed;
+    }
+
+    private static final class ItemKey {
+        private final SubProjectType type;
+        private final String itemId;
+
+        ItemKey(SubProjectType type, String itemId) {
+            this.type = type;
+            this.itemId = itemId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ItemKey)) {
+                return false;
+            }
+            final var that = (ItemKey) o;
+            return type == that.type && itemId.equals(that.itemId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, itemId);
+        }
+    }
+
+    private static final class Transition {
+        private String state;
+        private Date startTime;
+        private Date endTime;
+
+        void merge(String checkedState, Date time) {
+            state = checkedState;
+
+            final var timeAttribute = UpdateStateWorker.timeAttribute(checkedState);
+            if (UpdateStateWorker.START_TIME.equals(timeAttribute)) {
+                startTime = time;
+            } else if (UpdateStateWorker.END_TIME.equals(timeAttribute)) {
+                endTime = time;
+            }
+        }
+
+        void applyTo(Item item) {
+            item.setState(state);
+
+            if (item instanceof TimedItem) {
+                if (startTime != null) {
+                    ((TimedItem) item).setStartTime(startTime);
+                }
+                if (endTime != null) {
+                    ((TimedItem) item).setEndTime(endTime);
+                }
+            }
+        }
+    }
+}
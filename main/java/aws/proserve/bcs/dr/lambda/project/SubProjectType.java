@@ -0,0 +1,88 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.dynamo.DynamoItem;
+import aws.proserve.bcs.dr.project.Component;
+import aws.proserve.bcs.dr.project.Item;
+import aws.proserve.bcs.dr.project.Project;
+import aws.proserve.bcs.dr.project.SubProject;
+import aws.proserve.bcs.dr.s3.S3Item;
+import aws.proserve.bcs.dr.vpc.VpcItem;
+
+import java.util.function.Function;
+
+/**
+ * The sub projects whose items have their states updated by callbacks.
+ */
+enum SubProjectType {
+    DynamoDB(Component.DynamoDB, "dynamoProject", Project::getDynamoProject, DynamoItem.State::valueOf,
+            DynamoItem.class),
+    S3(Component.S3, "s3Project", Project::getS3Project, S3Item.State::valueOf, S3Item.class),
+    VPC(Component.VPC, "vpcProject", Project::getVpcProject, VpcItem.State::valueOf, VpcItem.class);
+
+    private final Component component;
+    private final String attribute;
+    private final Function<Project, SubProject<? extends Item>> projectFunction;
+    private final Function<String, Enum<?>> stateFunction;
+    private final Class<? extends Item> itemClass;
+
+    SubProjectType(Component component,
+                   String attribute,
+                   Function<Project, SubProject<? extends Item>> projectFunction,
+                   Function<String, Enum<?>> stateFunction,
+                   Class<? extends Item> itemClass) {
+        this.component = component;
+        this.attribute = attribute;
+        this.projectFunction = projectFunction;
+        this.stateFunction = stateFunction;
+        this.itemClass = itemClass;
+    }
+
+    static SubProjectType of(Component component) {
+        for (var type : values()) {
+            if (type.component == component) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported component " + component);
+    }
+
+    /**
+     * @return the attribute of the sub project in the project table.
+     */
+    String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * @return the attribute of the item index of the sub project in the project table.
+     */
+    String getIndexAttribute() {
+        return attribute + "ItemIndex";
+    }
+
+    /**
+     * @return the attribute of the item state counts of the sub project in the project table.
+     */
+    String getSummaryAttribute() {
+        return attribute + "ItemSummary";
+    }
+
+    SubProject<? extends Item> getSubProject(Project project) {
+        return projectFunction.apply(project);
+    }
+
+    /**
+     * @return the name of the state.
+     * @throws IllegalArgumentException if the state is not valid for the items of this sub project.
+     */
+    String checkState(String state) {
+        return stateFunction.apply(state).name();
+    }
+
+    Class<? extends Item> getItemClass() {
+        return itemClass;
+    }
+}
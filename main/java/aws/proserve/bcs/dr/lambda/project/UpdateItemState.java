@@ -8,11 +8,12 @@ import aws.proserve.bcs.dr.project.Component;
 import com.amazonaws.services.lambda.runtime.Context;
 
 public class UpdateItemState implements VoidHandler<UpdateItemState.Request> {
+    private static final ProjectComponent projectComponent = ProjectComponent.build();
 
     @Override
     public void handleRequest(Request request, Context context) {
         UpdateStateWorker
-                .getWorker(Component.of(request.getComponent()), ProjectComponent.build().projectFinder())
+                .getWorker(Component.of(request.getComponent()), projectComponent.projectStore())
                 .update(request.getId(), request.getItemId(), request.getState());
     }
 
@@ -0,0 +1,88 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.project.Component;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Consumes item state callbacks, each message body being the same as the request of {@link UpdateItemState}, from an
+ * SQS queue. The batching window of the event source is the window in which transitions of the same project are
+ * coalesced into a single write.
+ * <p>
+ * The queue is a FIFO one whose messages have the project ID as their {@code MessageGroupId}, so that the transitions
+ * of a project arrive in the order they are sent, which is the order they are applied in. The time of a transition is
+ * the {@code SentTimestamp} of its message.
+ * <p>
+ * Messages of a project which fails to be written are reported as batch item failures to be retried, all of them so
+ * that the later messages of its group are retried in order too, while messages with an unsupported component or an
+ * illegal state are dropped.
+ */
+public class UpdateItemStateQueue implements RequestHandler<SQSEvent, SQSBatchResponse> {
+    private static final Logger log = LoggerFactory.getLogger(UpdateItemStateQueue.class);
+    private static final ProjectComponent projectComponent = ProjectComponent.build();
+
+    @Override
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) {
+        final var received = System.currentTimeMillis();
+        final var messages = event.getRecords();
+        if (!messages.isEmpty() && !String.valueOf(messages.get(0).getEventSourceArn()).endsWith(".fifo")) {
+            log.warn("Queue {} is not FIFO, transitions of a project may apply out of order",
+                    messages.get(0).getEventSourceArn());
+        }
+
+        final var buffer = projectComponent.stateBuffer();
+        final var messageIds = new HashMap<String, List<String>>();
+        final Set<String> failedProjects;
+        try {
+            for (var message : messages) {
+                final UpdateItemState.Request request;
+                final SubProjectType type;
+                final String checkedState;
+                try {
+                    request = projectComponent.objectMapper()
+                            .readValue(message.getBody(), UpdateItemState.Request.class);
+                    type = SubProjectType.of(Component.of(request.getComponent()));
+                    checkedState = type.checkState(request.getState());
+                } catch (Exception e) {
+                    log.warn("Drop malformed item state message " + message.getMessageId(), e);
+                    continue;
+                }
+
+                buffer.add(request.getId(), type, request.getItemId(), checkedState, new Date(sentTime(message, received)));
+                messageIds.computeIfAbsent(request.getId(), k -> new ArrayList<>()).add(message.getMessageId());
+            }
+        } finally {
+            failedProjects = buffer.flush();
+        }
+
+        final var failures = new ArrayList<SQSBatchResponse.BatchItemFailure>();
+        for (var projectId : failedProjects) {
+            messageIds.getOrDefault(projectId, List.of())
+                    .forEach(id -> failures.add(new SQSBatchResponse.BatchItemFailure(id)));
+        }
+        return new SQSBatchResponse(failures);
+    }
+
+    /**
+     * @return the time SQS receives the message, or the time the batch is received if it is absent, for all messages
+     * of the batch alike.
+     */
+    private static long sentTime(SQSEvent.SQSMessage message, long received) {
+        final var attributes = message.getAttributes();
+        final var sent = attributes == null ? null : attributes.get("SentTimestamp");
+        return sent == null ? received : Long.parseLong(sent);
+    }
+}
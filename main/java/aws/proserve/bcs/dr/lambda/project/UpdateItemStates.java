@@ -0,0 +1,192 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.project;
+
+import aws.proserve.bcs.dr.lambda.MapHandler;
+import aws.proserve.bcs.dr.lambda.dto.ImmutableResponse;
+import aws.proserve.bcs.dr.lambda.dto.Response;
+import aws.proserve.bcs.dr.project.Component;
+import aws.proserve.bcs.dr.project.Item;
+import aws.proserve.bcs.dr.project.Project;
+import com.amazonaws.services.lambda.runtime.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Updates the states of many items of one project with a single read and a single write, unless the write conflicts
+ * with another one, in which case the updates are applied again to the latest project.
+ */
+public class UpdateItemStates implements MapHandler<UpdateItemStates.Request> {
+    private static final ProjectComponent projectComponent = ProjectComponent.build();
+
+    /**
+     * @return the response in the same shape as the API returns.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> handleRequest(Request request, Context context) {
+        return projectComponent.objectMapper().convertValue(
+                projectComponent.updateItemStates().update(request.getId(), request.getUpdates()), Map.class);
+    }
+
+    @Singleton
+    static class Worker {
+        private final Logger log = LoggerFactory.getLogger(getClass());
+        private final ProjectStore store;
+
+        @Inject
+        Worker(ProjectStore store) {
+            this.store = store;
+        }
+
+        /**
+         * @return the response whose result is the list of responses per update, in the same order, each with the
+         * item ID as its result. The project is written, and the response is successful, only if at least one update
+         * applies.
+         */
+        Response update(String projectId, List<Update> updates) {
+            log.info("Update project [{}] with {} item states", projectId, updates == null ? 0 : updates.size());
+            if (updates == null || updates.isEmpty()) {
+                return ImmutableResponse.builder()
+                        .isSuccessful(false)
+                        .cause("Need to provide updates")
+                        .build();
+            }
+
+            final var now = new Date();
+            final var results = new ArrayList<Response>(updates.size());
+            final var exists = store.update(projectId, project -> {
+                results.clear();
+                final var items = new EnumMap<SubProjectType, Map<String, Item>>(SubProjectType.class);
+                var applied = false;
+                for (var update : updates) {
+                    final var cause = apply(project, items, update, now);
+                    final var result = ImmutableResponse.builder()
+                            .isSuccessful(cause == null)
+                            .result(String.valueOf(update.getItemId()));
+                    if (cause != null) {
+                        result.cause(cause);
+                    }
+                    results.add(result.build());
+                    applied |= cause == null;
+                }
+                return applied;
+            });
+
+            if (!exists) {
+                return ImmutableResponse.builder()
+                        .isSuccessful(false)
+                        .cause("Unable to find project " + projectId)
+                        .build();
+            }
+
+            final var applied = results.stream().anyMatch(Response::isSuccessful);
+            final var response = ImmutableResponse.builder()
+                    .isSuccessful(applied)
+                    .result(results);
+            if (!applied) {
+                response.cause("None of the updates applies");
+            }
+            return response.build();
+        }
+
+        /**
+         * @return the cause if the update does not apply, otherwise {@code null}.
+         */
+        private String apply(Project project, Map<SubProjectType, Map<String, Item>> items, Update update, Date now) {
+            final SubProjectType type;
+            try {
+                type = SubProjectType.of(Component.of(update.getComponent()));
+            } catch (RuntimeException e) {
+                return "Unsupported component " + update.getComponent();
+            }
+
+            final String checkedState;
+            try {
+                checkedState = type.checkState(update.getState());
+            } catch (RuntimeException e) {
+                return "Illegal state " + update.getState();
+            }
+
+            final var item = items.computeIfAbsent(type, t -> index(project, t)).get(update.getItemId());
+            if (item == null) {
+                return "Unable to find item " + update.getItemId();
+            }
+
+            UpdateStateWorker.apply(item, checkedState, now);
+            return null;
+        }
+
+        private static Map<String, Item> index(Project project, SubProjectType type) {
+            final var subProject = type.getSubProject(project);
+            if (subProject == null || subProject.getItems() == null) {
+                return Map.of();
+            }
+
+            return subProject.getItems().stream()
+                    .collect(Collectors.toMap(Item::getId, Function.identity(), (a, b) -> a));
+        }
+    }
+
+    static final class Request {
+        private String id;
+        private List<Update> updates;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public List<Update> getUpdates() {
+            return updates;
+        }
+
+        public void setUpdates(List<Update> updates) {
+            this.updates = updates;
+        }
+    }
+
+    static final class Update {
+        private String component;
+        private String itemId;
+        private String state;
+
+        public String getComponent() {
+            return component;
+        }
+
+        public void setComponent(String component) {
+            this.component = component;
+        }
+
+        public String getItemId() {
+            return itemId;
+        }
+
+        public void setItemId(String itemId) {
+            this.itemId = itemId;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+}
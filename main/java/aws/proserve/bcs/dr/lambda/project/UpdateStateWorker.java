@@ -3,105 +3,119 @@
 
 package aws.proserve.bcs.dr.lambda.project;
 
-import aws.proserve.bcs.dr.dynamo.DynamoItem;
 import aws.proserve.bcs.dr.lambda.dto.ImmutableResponse;
 import aws.proserve.bcs.dr.lambda.dto.Response;
 import aws.proserve.bcs.dr.project.Component;
 import aws.proserve.bcs.dr.project.Item;
-import aws.proserve.bcs.dr.project.Project;
-import aws.proserve.bcs.dr.project.ProjectFinder;
 import aws.proserve.bcs.dr.project.States;
-import aws.proserve.bcs.dr.project.SubProject;
 import aws.proserve.bcs.dr.project.TimedItem;
-import aws.proserve.bcs.dr.s3.S3Item;
-import aws.proserve.bcs.dr.vpc.VpcItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Updates the state of one item in place through the item index of the sub project, and falls back to a versioned
+ * update of the whole project when the index is missing or stale, which also rebuilds the index.
+ */
 class UpdateStateWorker {
-    private final Logger log = LoggerFactory.getLogger(getClass());
-    private final ProjectFinder finder;
-    private final Function<String, Enum<?>> stateFunction;
-    private final Function<Project, SubProject<? extends Item>> projectFunction;
-
-    static UpdateStateWorker getWorker(Component component, ProjectFinder finder) {
-        switch (component) {
-            case DynamoDB:
-                return new UpdateStateWorker(finder, DynamoItem.State::valueOf, Project::getDynamoProject);
+    static final String START_TIME = "startTime";
+    static final String END_TIME = "endTime";
 
-            case S3:
-                return new UpdateStateWorker(finder, S3Item.State::valueOf, Project::getS3Project);
-
-            case VPC:
-                return new UpdateStateWorker(finder, VpcItem.State::valueOf, Project::getVpcProject);
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ProjectStore store;
+    private final SubProjectType type;
 
-            default:
-                throw new IllegalArgumentException("Unsupported component " + component);
-        }
+    static UpdateStateWorker getWorker(Component component, ProjectStore store) {
+        return new UpdateStateWorker(store, SubProjectType.of(component));
     }
 
-    UpdateStateWorker(
-            ProjectFinder finder,
-            Function<String, Enum<?>> stateFunction,
-            Function<Project, SubProject<? extends Item>> projectFunction) {
-        this.finder = finder;
-        this.stateFunction = stateFunction;
-        this.projectFunction = projectFunction;
+    UpdateStateWorker(ProjectStore store, SubProjectType type) {
+        this.store = store;
+        this.type = type;
     }
 
     Response update(String projectId, String itemId, String state) {
         log.info("Update project [{}] item [{}] state [{}]", projectId, itemId, state);
-        final var project = finder.findOne(projectId);
-        if (project == null) {
+        final String checkedState;
+        try {
+            checkedState = type.checkState(state);
+        } catch (IllegalArgumentException e) {
             return ImmutableResponse.builder()
                     .isSuccessful(false)
-                    .cause("Unable to find project " + projectId)
+                    .cause("Illegal state " + state)
                     .build();
         }
 
-        final var item = projectFunction.apply(project)
-                .getItems()
-                .stream()
-                .filter(i -> i.getId().equals(itemId))
-                .findFirst();
+        final var now = new Date();
+        final var ref = store.findItem(projectId, type, itemId);
+        if (ref != null && store.updateItem(projectId, type, itemId, ref, checkedState, now)) {
+            return ImmutableResponse.builder().isSuccessful(true).build();
+        }
+
+        log.info("Item index of project [{}] is missing or stale, update the whole project", projectId);
+        return updateProject(projectId, itemId, checkedState, now);
+    }
 
-        if (item.isEmpty()) {
+    private Response updateProject(String projectId, String itemId, String checkedState, Date now) {
+        final var found = new AtomicBoolean();
+        final var exists = store.update(projectId, project -> {
+            final var item = type.getSubProject(project)
+                    .getItems()
+                    .stream()
+                    .filter(i -> i.getId().equals(itemId))
+                    .findFirst();
+            found.set(item.isPresent());
+            item.ifPresent(i -> apply(i, checkedState, now));
+            return item.isPresent();
+        });
+
+        if (!exists) {
             return ImmutableResponse.builder()
                     .isSuccessful(false)
-                    .cause("Unable to find item " + itemId)
+                    .cause("Unable to find project " + projectId)
                     .build();
         }
 
-        final var i = item.get();
-        try {
-            final var checkedState = stateFunction.apply(state).name();
-            i.setState(checkedState);
-
-            if (i instanceof TimedItem) {
-                switch (checkedState) {
-                    case States.STARTED:
-                    case States.REPLICATING:
-                        ((TimedItem) i).setStartTime(new Date());
-                        break;
-
-                    case States.REPLICATED:
-                    case States.STOPPED:
-                    case States.FAILED:
-                        ((TimedItem) i).setEndTime(new Date());
-                        break;
-                }
-            }
-        } catch (IllegalArgumentException e) {
+        if (!found.get()) {
             return ImmutableResponse.builder()
                     .isSuccessful(false)
-                    .cause("Illegal state " + state)
+                    .cause("Unable to find item " + itemId)
                     .build();
         }
-
-        finder.save(project);
         return ImmutableResponse.builder().isSuccessful(true).build();
     }
+
+    static void apply(Item item, String checkedState, Date now) {
+        item.setState(checkedState);
+
+        if (item instanceof TimedItem) {
+            final var timeAttribute = timeAttribute(checkedState);
+            if (START_TIME.equals(timeAttribute)) {
+                ((TimedItem) item).setStartTime(now);
+            } else if (END_TIME.equals(timeAttribute)) {
+                ((TimedItem) item).setEndTime(now);
+            }
+        }
+    }
+
+    /**
+     * @return the time attribute a state sets, or {@code null} if it sets none.
+     */
+    static String timeAttribute(String checkedState) {
+        switch (checkedState) {
+            case States.STARTED:
+            case States.REPLICATING:
+                return START_TIME;
+
+            case States.REPLICATED:
+            case States.STOPPED:
+            case States.FAILED:
+                return END_TIME;
+
+            default:
+                return null;
+        }
+    }
 }
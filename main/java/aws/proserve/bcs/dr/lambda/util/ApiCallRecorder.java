@@ -0,0 +1,250 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.util;
+
+import aws.proserve.bcs.dr.exception.PortalException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.RetryUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Records the AWS calls made during an invocation, per operation: the call count, the latency histogram, the retries
+ * and the throttles. Closing the {@link Invocation} emits them as one embedded metrics line, together with the
+ * counters added by {@link #count}.
+ * <p>
+ * With {@code API_CALL_BUDGET} set, a call beyond the budget of the invocation fails before it is sent.
+ *
+ * @apiNote The invocation belongs to the thread which begins it, and to the tasks which that thread hands to other
+ * threads through {@link #propagate}, e.g. those of a pool the handler waits for. The calls of background threads,
+ * e.g. the refresh of a credential, are made outside of any invocation, thus neither recorded nor held to its budget.
+ */
+public final class ApiCallRecorder extends RequestHandler2 {
+    public static final ApiCallRecorder INSTANCE = new ApiCallRecorder();
+
+    private static final HandlerContextKey<Long> START = new HandlerContextKey<>("ApiCallStart");
+    private static final HandlerContextKey<Invocation> INVOCATION = new HandlerContextKey<>("ApiCallInvocation");
+    private static final long BUDGET = EnvConfig.getLong("API_CALL_BUDGET", 0);
+    private static final long[] BUCKETS_MILLIS = {10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000};
+
+    private static final ThreadLocal<Invocation> current = new ThreadLocal<>();
+
+    private ApiCallRecorder() {
+    }
+
+    /**
+     * Starts recording the calls of an invocation, use it with try-with-resources.
+     */
+    public static Invocation begin(String name) {
+        final var invocation = new Invocation(name);
+        current.set(invocation);
+        return invocation;
+    }
+
+    /**
+     * @return the task, which runs as part of the invocation of this thread on whichever thread runs it.
+     */
+    public static Runnable propagate(Runnable task) {
+        final var invocation = current.get();
+        return () -> {
+            final var previous = current.get();
+            current.set(invocation);
+            try {
+                task.run();
+            } finally {
+                current.set(previous);
+            }
+        };
+    }
+
+    /**
+     * @return the task, which runs as part of the invocation of this thread on whichever thread runs it.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        final var invocation = current.get();
+        return () -> {
+            final var previous = current.get();
+            current.set(invocation);
+            try {
+                return task.get();
+            } finally {
+                current.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Adds to a counter of the current invocation, e.g. the hits of a cache, which is ignored outside of an invocation.
+     */
+    public static void count(String metric, long value) {
+        final var invocation = current.get();
+        if (invocation != null) {
+            invocation.counters.merge(metric, value, Long::sum);
+        }
+    }
+
+    @Override
+    public void beforeRequest(Request<?> request) {
+        final var invocation = current.get();
+        if (invocation == null) {
+            return;
+        }
+
+        final var calls = invocation.calls.incrementAndGet();
+        if (BUDGET > 0 && calls > BUDGET) {
+            throw new PortalException(String.format("Invocation %s exceeds the budget of %d API calls at %s",
+                    invocation.name, BUDGET, operation(request)));
+        }
+        request.addHandlerContext(INVOCATION, invocation);
+        request.addHandlerContext(START, System.nanoTime());
+    }
+
+    @Override
+    public void afterAttempt(HandlerAfterAttemptContext context) {
+        final var invocation = context.getRequest().getHandlerContext(INVOCATION);
+        if (invocation == null) {
+            return;
+        }
+
+        final var exception = context.getException();
+        final var throttled = exception instanceof AmazonServiceException
+                && RetryUtils.isThrottlingException((AmazonServiceException) exception);
+        invocation.stats(operation(context.getRequest())).attempt(throttled);
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        complete(request, false);
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception e) {
+        complete(request, true);
+    }
+
+    private static void complete(Request<?> request, boolean failed) {
+        final var invocation = request.getHandlerContext(INVOCATION);
+        final var start = request.getHandlerContext(START);
+        if (invocation == null || start == null) {
+            return;
+        }
+        invocation.stats(operation(request)).complete(System.nanoTime() - start, failed);
+    }
+
+    private static String operation(Request<?> request) {
+        final var name = request.getOriginalRequest().getClass().getSimpleName();
+        return request.getServiceName() + "." + (name.endsWith("Request")
+                ? name.substring(0, name.length() - "Request".length())
+                : name);
+    }
+
+    public static final class Invocation implements AutoCloseable {
+        private final String name;
+        private final AtomicLong calls = new AtomicLong();
+        private final Map<String, Stats> operations = new ConcurrentHashMap<>();
+        private final Map<String, Long> counters = new ConcurrentHashMap<>();
+
+        private Invocation(String name) {
+            this.name = name;
+        }
+
+        private Stats stats(String operation) {
+            return operations.computeIfAbsent(operation, k -> new Stats());
+        }
+
+        @Override
+        public void close() {
+            if (current.get() == this) {
+                current.remove();
+            }
+
+            long completed = 0;
+            long attempts = 0;
+            long throttles = 0;
+            long errors = 0;
+            long nanos = 0;
+            final var summary = new TreeMap<String, Object>();
+            for (var entry : operations.entrySet()) {
+                final var stats = entry.getValue();
+                synchronized (stats) {
+                    completed += stats.calls;
+                    attempts += stats.attempts;
+                    throttles += stats.throttles;
+                    errors += stats.errors;
+                    nanos += stats.nanos;
+                    summary.put(entry.getKey(), stats.toMap());
+                }
+            }
+
+            final var metrics = EmbeddedMetrics.of("Function", name)
+                    .count("ApiCalls", calls.get())
+                    .count("ApiRetries", Math.max(0, attempts - completed))
+                    .count("ApiThrottles", throttles)
+                    .count("ApiErrors", errors)
+                    .milliseconds("ApiTime", TimeUnit.NANOSECONDS.toMillis(nanos))
+                    .property("ApiOperations", summary);
+            new TreeMap<>(counters).forEach(metrics::count);
+            metrics.emit();
+        }
+    }
+
+    private static final class Stats {
+        private final long[] histogram = new long[BUCKETS_MILLIS.length + 1];
+        private long calls;
+        private long attempts;
+        private long throttles;
+        private long errors;
+        private long nanos;
+
+        synchronized void attempt(boolean throttled) {
+            attempts++;
+            throttles += throttled ? 1 : 0;
+        }
+
+        synchronized void complete(long elapsed, boolean failed) {
+            calls++;
+            errors += failed ? 1 : 0;
+            nanos += elapsed;
+
+            final var millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            var bucket = 0;
+            while (bucket < BUCKETS_MILLIS.length && millis > BUCKETS_MILLIS[bucket]) {
+                bucket++;
+            }
+            histogram[bucket]++;
+        }
+
+        /**
+         * @return the stats with the histogram keyed by the upper bound of each bucket in milliseconds.
+         */
+        Map<String, Object> toMap() {
+            final var buckets = new LinkedHashMap<String, Long>();
+            for (int i = 0; i < histogram.length; i++) {
+                if (histogram[i] > 0) {
+                    buckets.put(i < BUCKETS_MILLIS.length ? "le" + BUCKETS_MILLIS[i] : "inf", histogram[i]);
+                }
+            }
+
+            final var map = new LinkedHashMap<String, Object>();
+            map.put("calls", calls);
+            map.put("retries", Math.max(0, attempts - calls));
+            map.put("throttles", throttles);
+            map.put("errors", errors);
+            map.put("millis", TimeUnit.NANOSECONDS.toMillis(nanos));
+            map.put("histogram", buckets);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.util;
+
+import com.amazonaws.jmespath.ObjectMapperSingleton;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emits metrics in the CloudWatch embedded metric format, a JSON log line which CloudWatch Logs turns into metrics.
+ *
+ * @apiNote The line is written to the standard output directly, as the log pattern would prefix it and break the
+ * format.
+ */
+public final class EmbeddedMetrics {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedMetrics.class);
+    private static final String NAMESPACE = System.getenv().getOrDefault(
+            "METRICS_NAMESPACE", "DisasterRecoveryFactory");
+
+    private final Map<String, Object> dimensions = new LinkedHashMap<>();
+    private final Map<String, Object> values = new LinkedHashMap<>();
+    private final List<Map<String, String>> definitions = new ArrayList<>();
+
+    private EmbeddedMetrics() {
+    }
+
+    public static EmbeddedMetrics of(String dimension, String value) {
+        final var metrics = new EmbeddedMetrics();
+        metrics.dimensions.put(dimension, value);
+        return metrics;
+    }
+
+    public EmbeddedMetrics count(String name, long value) {
+        return put(name, value, "Count");
+    }
+
+    public EmbeddedMetrics milliseconds(String name, long value) {
+        return put(name, value, "Milliseconds");
+    }
+
+    /**
+     * Adds a value which is logged along with the metrics but not turned into a metric.
+     */
+    public EmbeddedMetrics property(String name, Object value) {
+        values.put(name, value);
+        return this;
+    }
+
+    private EmbeddedMetrics put(String name, Object value, String unit) {
+        if (values.put(name, value) == null) {
+            definitions.add(Map.of("Name", name, "Unit", unit));
+        }
+        return this;
+    }
+
+    public void emit() {
+        final var root = new LinkedHashMap<String, Object>();
+        root.put("_aws", Map.of(
+                "Timestamp", System.currentTimeMillis(),
+                "CloudWatchMetrics", List.of(Map.of(
+                        "Namespace", NAMESPACE,
+                        "Dimensions", List.of(List.copyOf(dimensions.keySet())),
+                        "Metrics", definitions))));
+        root.putAll(dimensions);
+        root.putAll(values);
+
+        try {
+            System.out.println(ObjectMapperSingleton.getObjectMapper().writeValueAsString(root));
+        } catch (JsonProcessingException e) {
+            log.warn("Unable to emit metrics " + values, e);
+        }
+    }
+}
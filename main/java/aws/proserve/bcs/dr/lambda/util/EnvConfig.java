@@ -0,0 +1,48 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads tuning knobs from the Lambda environment variables, falling back to the default when absent or malformed.
+ * <p>
+ * A system property of the same name stands in for an absent variable, so that offline runs such as the simulations
+ * can tune the knobs without a Lambda environment.
+ */
+public final class EnvConfig {
+    private static final Logger log = LoggerFactory.getLogger(EnvConfig.class);
+
+    private EnvConfig() {
+    }
+
+    public static int getInt(String name, int defaultValue) {
+        return (int) getLong(name, defaultValue);
+    }
+
+    public static long getLong(String name, long defaultValue) {
+        final var value = get(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignore malformed value [{}] of {}, use {}", value, name, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        final var value = get(name);
+        return value == null || value.isBlank() ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private static String get(String name) {
+        final var value = System.getenv(name);
+        return value == null ? System.getProperty(name) : value;
+    }
+}
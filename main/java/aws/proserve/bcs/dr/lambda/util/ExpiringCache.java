@@ -0,0 +1,191 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A bounded, least-recently-used cache whose entries expire after a fixed time to live.
+ * <p>
+ * A missing value is loaded outside of the lock of the cache, once per key: concurrent callers of the same key wait
+ * for the one load, those of other keys go on. The values which leave the cache, evicted, expired, replaced or
+ * invalidated, are handed to the removal listener, outside of the lock as well.
+ *
+ * @apiNote It lives as long as the Lambda container, thus keep the size small and the time to live shorter than the
+ * lifetime of whatever the values depend on, e.g. credentials.
+ */
+public class ExpiringCache<K, V> {
+    private final long ttlNanos;
+    private final Consumer<? super V> onRemoval;
+    private final Map<K, Expiring<V>> entries;
+    private final Map<K, CompletableFuture<V>> loads = new HashMap<>();
+    private final List<V> removed = new ArrayList<>();
+
+    public ExpiringCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, value -> {
+        });
+    }
+
+    public ExpiringCache(int maxSize, Duration ttl, Consumer<? super V> onRemoval) {
+        this.ttlNanos = ttl.toNanos();
+        this.onRemoval = onRemoval;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Expiring<V>> eldest) {
+                if (size() > maxSize) {
+                    removed.add(eldest.getValue().value);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cached value, or the one from {@code loader} which is then cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        final CompletableFuture<V> load;
+        final boolean loading;
+        synchronized (this) {
+            final var entry = entries.get(key);
+            if (entry != null && entry.expireAt - System.nanoTime() > 0) {
+                return entry.value;
+            }
+
+            final var pending = loads.get(key);
+            loading = pending == null;
+            load = loading ? new CompletableFuture<>() : pending;
+            if (loading) {
+                loads.put(key, load);
+            }
+        }
+
+        if (!loading) {
+            return await(load);
+        }
+
+        try {
+            final V value = loader.apply(key);
+            synchronized (this) {
+                loads.remove(key);
+                store(key, value);
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                loads.remove(key);
+            }
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            notifyRemoved();
+        }
+    }
+
+    /**
+     * @return the cached value, or {@code null} if it is absent or expired.
+     */
+    public synchronized V getIfPresent(K key) {
+        final var entry = entries.get(key);
+        return entry != null && entry.expireAt - System.nanoTime() > 0 ? entry.value : null;
+    }
+
+    public void put(K key, V value) {
+        synchronized (this) {
+            store(key, value);
+        }
+        notifyRemoved();
+    }
+
+    public void invalidate(K key) {
+        synchronized (this) {
+            final var entry = entries.remove(key);
+            if (entry != null) {
+                removed.add(entry.value);
+            }
+        }
+        notifyRemoved();
+    }
+
+    public void invalidateAll() {
+        synchronized (this) {
+            entries.values().forEach(entry -> removed.add(entry.value));
+            entries.clear();
+        }
+        notifyRemoved();
+    }
+
+    public void invalidateAll(Predicate<? super K> filter) {
+        synchronized (this) {
+            final var iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final var entry = iterator.next();
+                if (filter.test(entry.getKey())) {
+                    removed.add(entry.getValue().value);
+                    iterator.remove();
+                }
+            }
+        }
+        notifyRemoved();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void store(K key, V value) {
+        final var previous = entries.put(key, new Expiring<>(value, System.nanoTime() + ttlNanos));
+        if (previous != null && previous.value != value) {
+            removed.add(previous.value);
+        }
+    }
+
+    private void notifyRemoved() {
+        final List<V> values;
+        synchronized (this) {
+            if (removed.isEmpty()) {
+                return;
+            }
+            values = new ArrayList<>(removed);
+            removed.clear();
+        }
+        values.forEach(onRemoval);
+    }
+
+    private static <V> V await(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Expiring<V> {
+        private final V value;
+        private final long expireAt;
+
+        Expiring(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package aws.proserve.bcs.dr.lambda.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Polls conditions with exponential backoff and jitter until they hold or a deadline passes, instead of failing the
+ * invocation when the deadline is reached.
+ * <p>
+ * The delay starts from {@code WAIT_BASE_DELAY_MILLIS} and doubles up to {@code WAIT_MAX_DELAY_MILLIS}, the actual
+ * delay is drawn between half of it and itself. The poll count and wait time of each wait are emitted as embedded
+ * metrics.
+ */
+public final class Waiter {
+    private static final Logger log = LoggerFactory.getLogger(Waiter.class);
+    private static final long BASE_DELAY_MILLIS = EnvConfig.getLong("WAIT_BASE_DELAY_MILLIS", 500);
+    private static final long MAX_DELAY_MILLIS = EnvConfig.getLong("WAIT_MAX_DELAY_MILLIS", 10_000);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        final var thread = new Thread(runnable, "waiter-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long deadline;
+
+    private Waiter(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @param budget the time all the waits of this waiter may take together.
+     */
+    public static Waiter within(Duration budget) {
+        return new Waiter(System.nanoTime() + budget.toNanos());
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+
+    /**
+     * @return {@code true} if the condition holds, or {@code false} if it does not before the deadline.
+     */
+    public boolean await(String name, BooleanSupplier condition) {
+        final var start = System.nanoTime();
+        var polls = 0;
+        var satisfied = false;
+        try {
+            for (int attempt = 0; ; attempt++) {
+                polls++;
+                if (condition.getAsBoolean()) {
+                    satisfied = true;
+                    return true;
+                }
+
+                final var delay = delayMillis(attempt);
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) > deadline) {
+                    log.info("Stop waiting for {} after {} polls, the deadline is near", name, polls);
+                    return false;
+                }
+                Thread.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            EmbeddedMetrics.of("Wait", name)
+                    .count("WaitPolls", polls)
+                    .milliseconds("WaitTime", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                    .property("Satisfied", satisfied)
+                    .emit();
+        }
+    }
+
+    /**
+     * Waits for the conditions concurrently, each with its own backoff.
+     *
+     * @return {@code true} if all the conditions hold before the deadline.
+     */
+    public boolean awaitAll(Map<String, BooleanSupplier> conditions) {
+        final var futures = new ArrayList<CompletableFuture<Boolean>>();
+        conditions.forEach((name, condition) ->
+                futures.add(CompletableFuture.supplyAsync(
+                        ApiCallRecorder.propagate(() -> await(name, condition)), executor)));
+
+        var satisfied = true;
+        for (var future : futures) {
+            satisfied &= future.join();
+        }
+        return satisfied;
+    }
+
+    private static long delayMillis(int attempt) {
+        final var delay = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}